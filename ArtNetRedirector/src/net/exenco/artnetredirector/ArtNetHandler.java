@@ -10,14 +10,12 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
-import java.util.Arrays;
 import java.util.List;
 
 public class ArtNetHandler {
@@ -34,6 +32,13 @@ public class ArtNetHandler {
     private String key;
     private SecretKeyFactory factory;
 
+    /* Session state, the key is derived once per start from a random salt */
+    private SecretKey sessionKey;
+    private final byte[] salt = new byte[16];
+    private final byte[] iv = new byte[12];
+    private long counter;
+    private final byte[] encryptBuffer = new byte[12 + 16 + 1024 + 16];
+
     public int start(InetSocketAddress readAddress, boolean external, List<InetSocketAddress> writeAddressList, String password, JLabel log, JLabel count) {
         this.log = log;
         this.count = count;
@@ -69,12 +74,13 @@ public class ArtNetHandler {
 
             this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
             this.factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            startSession();
 
             socketReader = new SocketReader();
             socketReader.start();
 
             return 1;
-        } catch (IOException | NoSuchAlgorithmException | NoSuchPaddingException e){
+        } catch (IOException | NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeySpecException e){
             System.err.println("There has been an error starting Art-Net.");
             log.setText("Error: " + e.getMessage());
             e.printStackTrace();
@@ -112,10 +118,8 @@ public class ArtNetHandler {
                         continue;
                     }
 
-                    byte[] data = Arrays.copyOf(receivedPacket.getData(), receivedPacket.getLength());
-
-                    byte[] encrypted = encrypt(data);
-                    receivedPacket.setData(encrypted);
+                    int length = encrypt(buffer, receivedPacket.getLength());
+                    receivedPacket.setData(encryptBuffer, 0, length);
 
                     count.setText(count.getText().equals("1") ? "0" : "1");
                     for(InetSocketAddress address : writeAddressList) {
@@ -123,6 +127,7 @@ public class ArtNetHandler {
                         receivedPacket.setPort(address.getPort());
                         writeSocket.send(receivedPacket);
                     }
+                    receivedPacket.setData(buffer);
                 } catch(Exception ignored) {
                     this.interrupt();
                 }
@@ -132,33 +137,42 @@ public class ArtNetHandler {
         }
     }
 
-    private byte[] encrypt(byte[] raw) {
-        try {
-            SecureRandom secureRandom = new SecureRandom();
-
-            byte[] salt = new byte[16];
-            secureRandom.nextBytes(salt);
-
-
-            byte[] iv = new byte[12];
-            secureRandom.nextBytes(iv);
+    /**
+     * Derives the key for a new session. The salt is sent along with every packet, so the receiver only has to run
+     * the expensive derivation once per session as well.
+     */
+    private void startSession() throws InvalidKeySpecException {
+        SecureRandom secureRandom = new SecureRandom();
+        secureRandom.nextBytes(salt);
+        // First four bytes of the nonce are random per session, the remaining eight count packets
+        secureRandom.nextBytes(iv);
+        counter = 0;
+
+        KeySpec spec = new PBEKeySpec(key.toCharArray(), salt, 65536, 128);
+        this.sessionKey = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+    }
 
-            KeySpec spec = new PBEKeySpec(key.toCharArray(), salt, 65536, 128);
-            SecretKey secretKey = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+    /**
+     * Encrypts a packet into the encrypt buffer as nonce (12), salt (16) and ciphertext.
+     * @param raw buffer containing the packet.
+     * @param length of the packet.
+     * @return length of the encrypted packet.
+     */
+    private int encrypt(byte[] raw, int length) {
+        try {
+            for (int i = 0; i < 8; i++)
+                iv[4 + i] = (byte) (counter >>> (56 - 8 * i));
+            counter++;
 
             GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
-
-            byte[] encrypted = cipher.doFinal(raw);
-
-            int length = iv.length + salt.length + encrypted.length;
-            ByteBuffer buffer = ByteBuffer.allocate(length);
-            buffer.put(iv);
-            buffer.put(salt);
-            buffer.put(encrypted);
-            return buffer.array();
-        } catch (InvalidAlgorithmParameterException | InvalidKeySpecException | InvalidKeyException |
-                 IllegalBlockSizeException | BadPaddingException e) {
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey, parameterSpec);
+
+            System.arraycopy(iv, 0, encryptBuffer, 0, iv.length);
+            System.arraycopy(salt, 0, encryptBuffer, iv.length, salt.length);
+            int offset = iv.length + salt.length;
+            return offset + cipher.doFinal(raw, 0, length, encryptBuffer, offset);
+        } catch (InvalidAlgorithmParameterException | InvalidKeyException |
+                 IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
             e.printStackTrace();
             throw new RuntimeException(e);
         }
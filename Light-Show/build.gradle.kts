@@ -50,7 +50,7 @@ bukkit {
     permissions {
         register("lightshow.*") {
             description = "Gives access to all lightshow comamnds."
-            children = listOf("lightshow.show", "lightshow.check", "lightshow.reload", "lightshow.start", "lightshow.stop", "lightshow.toggle", "lightshow.warning")
+            children = listOf("lightshow.show", "lightshow.check", "lightshow.reload", "lightshow.start", "lightshow.stats", "lightshow.stop", "lightshow.toggle", "lightshow.warning")
         }
         register("lightshow.show") {
             description = "Allows to control the lightshow."
@@ -68,6 +68,10 @@ bukkit {
             description = "Allows to start ArtNet connection."
             default = BukkitPluginDescription.Permission.Default.OP
         }
+        register("lightshow.stats") {
+            description = "Allows to view Art-Net statistics."
+            default = BukkitPluginDescription.Permission.Default.OP
+        }
         register("lightshow.stop") {
             description = "Allows to stop ArtNet connection."
             default = BukkitPluginDescription.Permission.Default.OP
@@ -39,23 +39,23 @@ public class LightShow extends JavaPlugin {
 
         /* World specific */
         this.proximitySensor = new ProximitySensor(showSettings);
-        this.packetHandler = new PacketHandler(this, proximitySensor, showSettings);
+        this.packetHandler = new PacketHandler(this, showSettings);
         this.proximitySensor.setPacketHandler(packetHandler);
         this.songManager = new SongManager(configHandler, showSettings, packetHandler);
         this.stageManager = new StageManager(this, configHandler, showSettings, songManager, packetHandler);
 
         /* Register Fixtures */
-        this.stageManager.registerFixture("Command", CommandFixture.class);
-        this.stageManager.registerFixture("Beacon", BeaconFixture.class);
-        this.stageManager.registerFixture("BlockChanger", BlockChangerFixture.class);
-        this.stageManager.registerFixture("BlockUpdater", BlockUpdaterFixture.class);
-        this.stageManager.registerFixture("Crystal", CrystalFixture.class);
-        this.stageManager.registerFixture("FireworkLauncher", FireworkFixture.class);
-        this.stageManager.registerFixture("FogMachine", FogMachineFixture.class);
-        this.stageManager.registerFixture("LogoDisplay", LogoFixture.class);
-        this.stageManager.registerFixture("MovingHead", MovingHeadFixture.class);
-        this.stageManager.registerFixture("ParticleFlare", ParticleFlareFixture.class);
-        this.stageManager.registerFixture("SongSelector", SongSelectorFixture.class);
+        this.stageManager.registerFixture("Command", CommandFixture::new);
+        this.stageManager.registerFixture("Beacon", BeaconFixture::new);
+        this.stageManager.registerFixture("BlockChanger", BlockChangerFixture::new);
+        this.stageManager.registerFixture("BlockUpdater", BlockUpdaterFixture::new);
+        this.stageManager.registerFixture("Crystal", CrystalFixture::new);
+        this.stageManager.registerFixture("FireworkLauncher", FireworkFixture::new);
+        this.stageManager.registerFixture("FogMachine", FogMachineFixture::new);
+        this.stageManager.registerFixture("LogoDisplay", LogoFixture::new);
+        this.stageManager.registerFixture("MovingHead", MovingHeadFixture::new);
+        this.stageManager.registerFixture("ParticleFlare", ParticleFlareFixture::new);
+        this.stageManager.registerFixture("SongSelector", SongSelectorFixture::new);
         this.stageManager.load();
 
         /* Initialise listener */
@@ -81,24 +81,22 @@ public class LightShow extends JavaPlugin {
         }
         if(this.packetHandler != null) {
             this.packetHandler.resetEverything();
+            this.packetHandler.stop();
         }
     }
 
     /**
      * Reloads the plugin and all its contents.
-     * Does stop but not restart Art-Net if it was running.
+     * Art-Net keeps running and only changed fixtures are recreated, see {@link StageManager#load()}.
      */
     public void reload() {
         this.getLogger().info("Reloading...");
 
-        this.stageManager.stop();
         this.songManager.stop();
-        this.packetHandler.resetEverything();
 
         this.configHandler.load();
         this.showSettings.load();
         this.proximitySensor.load();
-        this.songManager.loadSongs();
         this.stageManager.load();
 
         this.getLogger().info("Successfully reloaded!");
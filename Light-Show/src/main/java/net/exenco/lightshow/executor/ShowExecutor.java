@@ -30,6 +30,7 @@ public class ShowExecutor implements CommandExecutor, TabCompleter {
         commandList.add(new CheckCommand(lightShow, showSettings, stageManager));
         commandList.add(new ReloadCommand(lightShow, showSettings));
         commandList.add(new StartCommand(showSettings, stageManager));
+        commandList.add(new StatsCommand(showSettings, stageManager));
         commandList.add(new StopCommand(showSettings, stageManager));
         commandList.add(new WarningCommand(showSettings));
         commandList.add(new ToggleCommand(showSettings, proximitySensor));
@@ -0,0 +1,70 @@
+package net.exenco.lightshow.executor.commands;
+
+import net.exenco.lightshow.show.artnet.ArtNetReceiver;
+import net.exenco.lightshow.show.artnet.DmxBuffer;
+import net.exenco.lightshow.show.stage.StageManager;
+import net.exenco.lightshow.util.ShowSettings;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+
+public class StatsCommand extends ShowCommand {
+
+    private final StageManager stageManager;
+    public StatsCommand(ShowSettings showSettings, StageManager stageManager) {
+        super(showSettings);
+        this.stageManager = stageManager;
+    }
+
+    @Override
+    public String getName() {
+        return "stats";
+    }
+
+    @Override
+    public String getPermission() {
+        return "lightshow.stats";
+    }
+
+    @Override
+    public int getPosition() {
+        return 1;
+    }
+
+    @Override
+    public List<ShowCommand> getNext() {
+        return null;
+    }
+
+    @Override
+    public boolean execute(CommandSender commandSender, Command command, String label, String[] args) {
+        ShowSettings.ArtNet artNet = showSettings.artNet();
+        ArtNetReceiver artNetReceiver = stageManager.getArtNetReceiver();
+
+        String receiverStatistics = artNet.receiverStatistics();
+        receiverStatistics = receiverStatistics.replaceAll("%received%", artNetReceiver.getReceivedPackets() + "");
+        receiverStatistics = receiverStatistics.replaceAll("%dropped%", artNetReceiver.getLocalDrops() + "");
+        long kernelDrops = artNetReceiver.getKernelDrops();
+        receiverStatistics = receiverStatistics.replaceAll("%kernel%", kernelDrops < 0 ? "?" : kernelDrops + "");
+        commandSender.sendMessage(receiverStatistics);
+
+        for (DmxBuffer.Statistics statistics : stageManager.getStatistics()) {
+            String universeStatistics = artNet.universeStatistics();
+            universeStatistics = universeStatistics.replaceAll("%universe%", (statistics.portAddress() + 1) + "");
+            universeStatistics = universeStatistics.replaceAll("%received%", statistics.received() + "");
+            universeStatistics = universeStatistics.replaceAll("%stale%", statistics.stale() + "");
+            universeStatistics = universeStatistics.replaceAll("%duplicates%", statistics.duplicates() + "");
+            universeStatistics = universeStatistics.replaceAll("%lost%", statistics.lost() + "");
+            universeStatistics = universeStatistics.replaceAll("%unchanged%", statistics.unchanged() + "");
+            universeStatistics = universeStatistics.replaceAll("%sources%", statistics.sources() + "");
+            commandSender.sendMessage(universeStatistics);
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> tabComplete(CommandSender commandSender, Command command, String label, String[] args) {
+        return null;
+    }
+}
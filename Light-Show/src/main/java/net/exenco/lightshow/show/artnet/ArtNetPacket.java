@@ -1,41 +1,177 @@
 package net.exenco.lightshow.show.artnet;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
-public class ArtNetPacket {
+/**
+ * Reusable flyweight view over a received Art-Net datagram.
+ * The view does not copy or allocate: {@link #wrap(ByteBuffer)} validates the header in place and all getters read
+ * directly from the wrapped buffer. It is only valid until the buffer is reused for the next datagram.
+ */
+public class ArtNetPacket implements DmxPacket {
     public static final byte[] PACKET_HEADER = "Art-Net\0".getBytes();
 
-    private final int universeID;
-    private final byte[] dmxData = new byte[530];
+    public static final int OP_DMX = 0x5000;
+    public static final int OP_SYNC = 0x5200;
+    public static final int OP_POLL = 0x2000;
+    public static final int OP_POLL_REPLY = 0x2100;
 
-    public ArtNetPacket(byte[] data) {
-        universeID = ByteBuffer.wrap(data, 14, 8).get();
-        int numChannels = ByteBuffer.wrap(data, 16, 2).getShort();
-        System.arraycopy(data, 18, dmxData, 0, Math.min(numChannels, data.length - 18));
+    public static final int HEADER_LENGTH = 18;
+    public static final int SYNC_LENGTH = 14;
+    public static final int MAX_DMX_LENGTH = 512;
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Points this view at the datagram between position and limit of given buffer.
+     * The position and limit of the buffer are not modified.
+     * @param buffer containing the received datagram.
+     * @return whether the datagram is a valid ArtDmx, ArtSync or ArtPoll packet.
+     */
+    public boolean wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.length = buffer.remaining();
+
+        if (length < SYNC_LENGTH || !isValidHeader())
+            return false;
+        return switch (getOpCode()) {
+            case OP_DMX -> {
+                if (length < HEADER_LENGTH)
+                    yield false;
+                int dmxLength = getLength();
+                yield dmxLength >= 2 && dmxLength <= MAX_DMX_LENGTH && HEADER_LENGTH + dmxLength <= length;
+            }
+            case OP_SYNC, OP_POLL -> true;
+            default -> false;
+        };
+    }
+
+    private boolean isValidHeader() {
+        for (int i = 0; i < PACKET_HEADER.length; i++)
+            if (buffer.get(offset + i) != PACKET_HEADER[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the little-endian OpCode.
+     */
+    public int getOpCode() {
+        return (buffer.get(offset + 8) & 0xFF) | (buffer.get(offset + 9) & 0xFF) << 8;
+    }
+
+    public boolean isDmx() {
+        return getOpCode() == OP_DMX;
+    }
+
+    public boolean isSync() {
+        return getOpCode() == OP_SYNC;
+    }
+
+    public boolean isPoll() {
+        return getOpCode() == OP_POLL;
+    }
+
+    /**
+     * @return the sequence number, 0 if sequencing is disabled by the sender.
+     */
+    @Override
+    public int getSequence() {
+        return buffer.get(offset + 12) & 0xFF;
+    }
+
+    @Override
+    public int getSequenceModulus() {
+        return SequenceTracker.ART_NET;
+    }
+
+    /**
+     * @return -1 as ArtDmx does not carry a priority.
+     */
+    @Override
+    public int getPriority() {
+        return -1;
+    }
+
+    /**
+     * @return {@link DmxBuffer#ART_SYNC}, whether ArtSync is in use is decided by the receiver.
+     */
+    @Override
+    public int getSyncAddress() {
+        return DmxBuffer.ART_SYNC;
+    }
+
+    /**
+     * @return the physical input port the data originated from. Informational only.
+     */
+    public int getPhysical() {
+        return buffer.get(offset + 13) & 0xFF;
+    }
+
+    /**
+     * @return the Net switch (bits 14-8 of the Port-Address).
+     */
+    public int getNet() {
+        return buffer.get(offset + 15) & 0x7F;
+    }
+
+    /**
+     * @return the SubNet switch (bits 7-4 of the Port-Address).
+     */
+    public int getSubNet() {
+        return (buffer.get(offset + 14) & 0xF0) >> 4;
+    }
+
+    /**
+     * @return the Universe switch (bits 3-0 of the Port-Address).
+     */
+    public int getUniverse() {
+        return buffer.get(offset + 14) & 0x0F;
+    }
+
+    /**
+     * @return the full 15-bit Port-Address composed of Net, SubNet and Universe.
+     */
+    @Override
+    public int getPortAddress() {
+        return getNet() << 8 | (buffer.get(offset + 14) & 0xFF);
     }
 
-    public byte[] getDmx() {
-        return dmxData;
+    /**
+     * @return the big-endian number of DMX slots contained in the packet.
+     */
+    @Override
+    public int getLength() {
+        return (buffer.get(offset + 16) & 0xFF) << 8 | (buffer.get(offset + 17) & 0xFF);
     }
 
-    public int getUniverseID() {
-        return universeID;
+    /**
+     * Gets a single DMX slot.
+     * @param slot zero-based index of the slot.
+     * @return the unsigned value of given slot.
+     */
+    @Override
+    public int getDmx(int slot) {
+        return buffer.get(offset + HEADER_LENGTH + slot) & 0xFF;
     }
 
-    private static boolean isValidHeader(byte[] data) {
-        boolean equal = true;
-        for (int i = 0; i < ArtNetPacket.PACKET_HEADER.length && equal; i++)
-            equal = data[i] == ArtNetPacket.PACKET_HEADER[i];
-        return equal;
+    /**
+     * Creates a read-only slice of the DMX data without copying.
+     * Prefer {@link #copyDmx(byte[])} on hot paths as this allocates a view.
+     * @return read-only view of the DMX data.
+     */
+    public ByteBuffer getDmx() {
+        return buffer.asReadOnlyBuffer().position(offset + HEADER_LENGTH).limit(offset + HEADER_LENGTH + getLength()).slice();
     }
 
-    public static ArtNetPacket valueOf(byte[] raw) {
-        if (raw.length < 20)
-            return null;
-        int opCode = ByteBuffer.wrap(raw, 8, 16).order(ByteOrder.LITTLE_ENDIAN).getShort();
-        if (opCode == 0x5000 && isValidHeader(raw))
-            return new ArtNetPacket(raw);
-        return null;
+    /**
+     * Copies the DMX data into given frame. Slots not contained in the packet are left untouched.
+     * @param frame to copy into, at least {@link #getLength()} long.
+     */
+    @Override
+    public void copyDmx(byte[] frame) {
+        buffer.get(offset + HEADER_LENGTH, frame, 0, Math.min(getLength(), frame.length));
     }
-}
\ No newline at end of file
+}
@@ -6,23 +6,37 @@ import org.bukkit.scheduler.BukkitRunnable;
 
 import javax.crypto.*;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ArtNetReceiver {
-    private boolean running;
+    private static final int PACKET_LENGTH = 1024;
+    private static final int ENCRYPTION_OVERHEAD = 16 + 16 + 12;
+
+    private volatile boolean running;
     private BukkitRunnable bukkitRunnable;
     private DatagramSocket datagramSocket;
+    private DatagramChannel datagramChannel;
+    private Selector selector;
+    private int port;
+    private volatile ArtPollReplier artPollReplier;
+
+    private final AtomicLong receivedPackets = new AtomicLong();
+    private final AtomicLong localDrops = new AtomicLong();
 
     private final StageManager stageManager;
     private final ShowSettings showSettings;
@@ -34,7 +48,7 @@ public class ArtNetReceiver {
     }
 
     public boolean isRunning() {
-        return bukkitRunnable != null || datagramSocket != null;
+        return bukkitRunnable != null || datagramSocket != null || datagramChannel != null;
     }
 
     public boolean start() {
@@ -45,32 +59,63 @@ public class ArtNetReceiver {
 
         ShowSettings.ArtNet settings = showSettings.artNet();
 
-        int port = settings.address().port();
+        this.port = settings.address().port();
         String networkInterfaceAddress = settings.address().ip();
+        ShowSettings.ArtNet.Receiver receiver = settings.receiver();
         try {
             // Get IP
             InetSocketAddress inetSocketAddress = settings.redirector().enabled() ? new InetSocketAddress(port) : new InetSocketAddress(networkInterfaceAddress, port);
 
-            // Start socket
-            datagramSocket = new DatagramSocket(inetSocketAddress);
-
-            datagramSocket.setReuseAddress(true);
-            datagramSocket.setBroadcast(true);
-            datagramSocket.setSoTimeout(100);
+            if (receiver.channel()) {
+                // Start channel
+                datagramChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                datagramChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                datagramChannel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+                if (receiver.receiveBuffer() > 0)
+                    datagramChannel.setOption(StandardSocketOptions.SO_RCVBUF, receiver.receiveBuffer());
+                datagramChannel.bind(inetSocketAddress);
+                datagramChannel.configureBlocking(false);
 
-        } catch (SocketException e) {
+                selector = Selector.open();
+                datagramChannel.register(selector, SelectionKey.OP_READ);
+            } else {
+                // Start socket
+                datagramSocket = new DatagramSocket(null);
+                datagramSocket.setReuseAddress(true);
+                datagramSocket.setBroadcast(true);
+                if (receiver.receiveBuffer() > 0)
+                    datagramSocket.setReceiveBufferSize(receiver.receiveBuffer());
+                datagramSocket.setSoTimeout(100);
+                datagramSocket.bind(inetSocketAddress);
+            }
+        } catch (IOException e) {
             logger.log(Level.WARNING, "Cannot start Art-Net!");
             e.printStackTrace();
+            closeQuietly();
             return false;
         }
 
+        // Answer polls directly, the redirector is responsible for that when in use
+        this.artPollReplier = settings.redirector().enabled() ? null : new ArtPollReplier(showSettings);
+
         // Start
-        this.bukkitRunnable = new ReceiverRunnable();
+        this.receivedPackets.set(0);
+        this.localDrops.set(0);
+        this.running = true;
+        this.bukkitRunnable = receiver.channel() ? new ChannelReceiverRunnable(datagramChannel, selector) : new SocketReceiverRunnable(datagramSocket);
         bukkitRunnable.runTaskAsynchronously(stageManager.getLightShow());
-        logger.info("Starting Art-Net at: " + networkInterfaceAddress + ":" + port);
+        logger.info("Starting Art-Net at: " + networkInterfaceAddress + ":" + port + (receiver.channel() ? " (channel)" : " (socket)"));
         return true;
     }
 
+    /**
+     * Advertises the universes of the current patch in replies to ArtPoll from now on.
+     */
+    public void updateUniverses() {
+        if (artPollReplier != null)
+            this.artPollReplier = new ArtPollReplier(showSettings);
+    }
+
     public boolean stop() {
         if(!this.isRunning()) {
             logger.warning("Could not stop receiver: Not currently running.");
@@ -78,36 +123,193 @@ public class ArtNetReceiver {
         }
         this.running = false;
 
-        datagramSocket.close();
-        datagramSocket = null;
+        if (selector != null)
+            selector.wakeup();
+        closeQuietly();
         bukkitRunnable.cancel();
         bukkitRunnable = null;
 
-        logger.info("Stopped Art-Net.");
+        logger.info("Stopped Art-Net. Received " + receivedPackets.get() + " packets, dropped " + localDrops.get() + " locally.");
         return true;
     }
 
-    private class ReceiverRunnable extends BukkitRunnable {
+    private void closeQuietly() {
+        try {
+            if (datagramSocket != null)
+                datagramSocket.close();
+            if (datagramChannel != null)
+                datagramChannel.close();
+            if (selector != null)
+                selector.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+        datagramSocket = null;
+        datagramChannel = null;
+        selector = null;
+    }
+
+    /**
+     * @return number of datagrams received since start.
+     */
+    public long getReceivedPackets() {
+        return receivedPackets.get();
+    }
+
+    /**
+     * @return number of datagrams discarded by the plugin since start, e.g. malformed, truncated or wrongly encrypted.
+     */
+    public long getLocalDrops() {
+        return localDrops.get();
+    }
+
+    /**
+     * Reads the number of datagrams the kernel dropped on the receive port because the socket buffer was full.
+     * Only available on Linux, as the counter is read from /proc/net/udp.
+     * @return number of dropped datagrams or -1 if unknown.
+     */
+    public long getKernelDrops() {
+        if (!isRunning())
+            return -1;
+        long drops = readKernelDrops("/proc/net/udp", port);
+        long drops6 = readKernelDrops("/proc/net/udp6", port);
+        if (drops < 0 && drops6 < 0)
+            return -1;
+        return Math.max(drops, 0) + Math.max(drops6, 0);
+    }
+
+    private static long readKernelDrops(String file, int port) {
+        String localPort = String.format(":%04X", port);
+        long drops = -1;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine(); // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length < 13 || !columns[1].endsWith(localPort))
+                    continue;
+                drops = Math.max(drops, 0) + Long.parseLong(columns[columns.length - 1]);
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            return -1;
+        }
+        return drops;
+    }
+
+    private abstract class ReceiverRunnable extends BukkitRunnable {
 
         private final Cipher cipher;
-        private final SecretKeyFactory factory;
+        private final SessionKeyCache keyCache;
+        private final byte[] iv = new byte[12];
+        private final ByteBuffer decrypted = ByteBuffer.allocate(PACKET_LENGTH);
+        protected final boolean encrypted;
 
         private ReceiverRunnable() {
+            ShowSettings.ArtNet.Redirector settings = showSettings.artNet().redirector();
+            this.encrypted = settings.enabled();
+            this.keyCache = new SessionKeyCache(settings.key(), 4);
             try {
                 this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
-                this.factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
             } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        protected int getPacketLength() {
+            return encrypted ? PACKET_LENGTH + ENCRYPTION_OVERHEAD : PACKET_LENGTH;
+        }
+
+        /**
+         * Passes a received datagram on to the {@link StageManager}.
+         * @param data buffer whose remaining bytes contain the datagram.
+         * @param source address of the sender.
+         */
+        protected void handle(ByteBuffer data, InetAddress source) {
+            receivedPackets.incrementAndGet();
+            if (encrypted) {
+                data = decrypt(data);
+                if (data == null) {
+                    localDrops.incrementAndGet();
+                    return;
+                }
+            }
+            else if (artPollReplier != null && artPollReplier.isPoll(data)) {
+                for (ByteBuffer reply : artPollReplier.getReplies()) {
+                    try {
+                        reply(reply);
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Could not send ArtPollReply: " + e.getMessage());
+                        break;
+                    }
+                }
+                return;
+            }
+            if (!stageManager.receiveArtNet(data, DmxBuffer.getSourceId(source)))
+                localDrops.incrementAndGet();
+        }
+
+        /**
+         * Sends a reply to the source of the datagram currently being handled.
+         * @param reply buffer whose remaining bytes contain the packet.
+         */
+        protected abstract void reply(ByteBuffer reply) throws IOException;
+
+        /**
+         * Decrypts a packet sent by the redirector. Packets are laid out as nonce (12), session salt (16) and
+         * ciphertext, the key for a salt is only derived once per session.
+         */
+        private ByteBuffer decrypt(ByteBuffer raw) {
+            int position = raw.position();
+            if (raw.remaining() < iv.length + SessionKeyCache.SALT_LENGTH + 16)
+                return null;
+            try {
+                SecretKeySpec secretKey = keyCache.getKey(raw, position + iv.length);
+                if (secretKey == null)
+                    return null;
+                raw.get(position, iv);
+                GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
+                cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
+
+                raw.position(position + iv.length + SessionKeyCache.SALT_LENGTH);
+                decrypted.clear();
+                cipher.doFinal(raw, decrypted);
+                keyCache.confirm(secretKey);
+                return decrypted.flip();
+
+            } catch (InvalidAlgorithmParameterException | InvalidKeyException |
+                     IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+                logger.warning("Received packet with wrong encryption!");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Blocking receiver using a {@link DatagramSocket}. Wakes up every 100ms through the socket timeout to check
+     * whether it is still running.
+     */
+    private class SocketReceiverRunnable extends ReceiverRunnable {
+
+        private final DatagramSocket datagramSocket;
+        private final byte[] buffer = new byte[getPacketLength()];
+        private final DatagramPacket receivedPacket = new DatagramPacket(buffer, buffer.length);
+        private final DatagramPacket replyPacket = new DatagramPacket(new byte[0], 0);
+
+        private SocketReceiverRunnable(DatagramSocket datagramSocket) {
+            this.datagramSocket = datagramSocket;
+        }
+
+        @Override
+        protected void reply(ByteBuffer reply) throws IOException {
+            replyPacket.setData(reply.array(), reply.position(), reply.remaining());
+            replyPacket.setAddress(receivedPacket.getAddress());
+            replyPacket.setPort(ArtPollReplier.PORT);
+            datagramSocket.send(replyPacket);
+        }
+
         @Override
         public void run() {
-            running = true;
-            ShowSettings.ArtNet settings = showSettings.artNet();
-            int packet_length = settings.redirector().enabled() ? 1024 + 16 + 16 + 12 : 1024;
-            byte[] buffer = new byte[packet_length];
-            DatagramPacket receivedPacket = new DatagramPacket(buffer, buffer.length);
+            ByteBuffer view = ByteBuffer.wrap(buffer);
             try {
                 while(running) {
                     try {
@@ -118,44 +320,64 @@ public class ArtNetReceiver {
 //                            continue;
 //                        }
 
-                        byte[] data = Arrays.copyOf(receivedPacket.getData(), receivedPacket.getLength());
-
-                        if (settings.redirector().enabled()) {
-                            data = decrypt(data);
-                            if (data == null)
-                                continue;
-                        }
-                        stageManager.receiveArtNet(data);
+                        view.clear().limit(receivedPacket.getLength());
+                        handle(view, receivedPacket.getAddress());
                     } catch (SocketTimeoutException ignored) {}
-                    stageManager.updateFixtures();
                 }
             } catch (IOException e) {
                 if(running)
                     logger.log(Level.WARNING, e.getMessage(), e.getCause());
             }
         }
+    }
 
-        private byte[] decrypt(byte[] raw) {
-            try {
-                ShowSettings.ArtNet.Redirector settings = showSettings.artNet().redirector();
-
-                String key = settings.key();
-                byte[] iv = Arrays.copyOfRange(raw, 0, 12);
-                byte[] salt = Arrays.copyOfRange(raw, 12, 28);
-                byte[] data = Arrays.copyOfRange(raw, 28, raw.length);
+    /**
+     * Non-blocking receiver using a {@link DatagramChannel} and a pooled direct buffer.
+     * Every wakeup drains all queued datagrams, stopping is done through {@link Selector#wakeup()}.
+     */
+    private class ChannelReceiverRunnable extends ReceiverRunnable {
 
-                KeySpec spec = new PBEKeySpec(key.toCharArray(), salt, 65536, 128);
-                SecretKey secretKey = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
-                GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
+        private final DatagramChannel datagramChannel;
+        private final Selector selector;
+        private SocketAddress source;
 
-                return cipher.doFinal(data);
+        private ChannelReceiverRunnable(DatagramChannel datagramChannel, Selector selector) {
+            this.datagramChannel = datagramChannel;
+            this.selector = selector;
+        }
 
-            } catch (InvalidAlgorithmParameterException | InvalidKeySpecException | InvalidKeyException |
-                     IllegalBlockSizeException | BadPaddingException e) {
-                logger.warning("Received packet with wrong encryption!");
+        @Override
+        public void run() {
+            // One byte larger than the biggest accepted packet so truncated datagrams can be detected
+            ByteBuffer buffer = ByteBuffer.allocateDirect(getPacketLength() + 1);
+            try {
+                while(running) {
+                    if (selector.select() > 0) {
+                        selector.selectedKeys().clear();
+                        while (running) {
+                            buffer.clear();
+                            if ((source = datagramChannel.receive(buffer)) == null)
+                                break;
+                            buffer.flip();
+                            if (!buffer.hasRemaining() || buffer.limit() == buffer.capacity()) {
+                                receivedPackets.incrementAndGet();
+                                localDrops.incrementAndGet();
+                                continue;
+                            }
+                            handle(buffer, ((InetSocketAddress) source).getAddress());
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if(running)
+                    logger.log(Level.WARNING, e.getMessage(), e.getCause());
             }
-            return null;
+        }
+
+        @Override
+        protected void reply(ByteBuffer reply) throws IOException {
+            InetAddress address = ((InetSocketAddress) source).getAddress();
+            datagramChannel.send(reply, new InetSocketAddress(address, ArtPollReplier.PORT));
         }
     }
 }
@@ -0,0 +1,115 @@
+package net.exenco.lightshow.show.artnet;
+
+import net.exenco.lightshow.util.ShowSettings;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Answers ArtPoll packets with ArtPollReply packets advertising exactly the patched universes.
+ * Consoles use the replies to send only those universes via unicast instead of broadcasting everything.
+ * An ArtPollReply can describe up to four ports sharing Net and SubNet, so one reply is built per group of four
+ * universes, distinguished by their BindIndex. All replies are built once up front.
+ */
+public class ArtPollReplier {
+    public static final int PORT = 0x1936;
+
+    private static final int REPLY_LENGTH = 239;
+    private static final int PORTS_PER_REPLY = 4;
+    private static final String SHORT_NAME = "Light-Show";
+    private static final String LONG_NAME = "Minecraft Light-Show";
+
+    private final ArtNetPacket artNetPacket = new ArtNetPacket();
+    private final ByteBuffer[] replies;
+
+    public ArtPollReplier(ShowSettings showSettings) {
+        byte[] ip = getIp(showSettings.artNet().address().ip());
+
+        // Group universes by Net and SubNet
+        TreeSet<Integer> portAddresses = new TreeSet<>();
+        for (ShowSettings.DmxEntry dmxEntry : showSettings.dmxEntryList())
+            portAddresses.add(dmxEntry.universe() - 1);
+        List<List<Integer>> groups = new ArrayList<>();
+        List<Integer> group = null;
+        for (int portAddress : portAddresses) {
+            if (group == null || group.size() == PORTS_PER_REPLY || group.get(0) >> 4 != portAddress >> 4) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(portAddress);
+        }
+
+        this.replies = new ByteBuffer[groups.size()];
+        for (int i = 0; i < groups.size(); i++)
+            replies[i] = buildReply(ip, groups.get(i), i + 1);
+    }
+
+    /**
+     * @param data buffer whose remaining bytes contain a received datagram.
+     * @return whether the datagram is an ArtPoll.
+     */
+    public boolean isPoll(ByteBuffer data) {
+        return artNetPacket.wrap(data) && artNetPacket.isPoll();
+    }
+
+    /**
+     * @return the ArtPollReply packets to answer an ArtPoll with, ready to be sent.
+     */
+    public ByteBuffer[] getReplies() {
+        for (ByteBuffer reply : replies)
+            reply.rewind();
+        return replies;
+    }
+
+    private static ByteBuffer buildReply(byte[] ip, List<Integer> portAddresses, int bindIndex) {
+        ByteBuffer reply = ByteBuffer.allocate(REPLY_LENGTH);
+        int portAddress = portAddresses.get(0);
+
+        reply.put(0, ArtNetPacket.PACKET_HEADER);
+        reply.put(8, (byte) (ArtNetPacket.OP_POLL_REPLY & 0xFF));
+        reply.put(9, (byte) (ArtNetPacket.OP_POLL_REPLY >> 8));
+        reply.put(10, ip);
+        reply.put(14, (byte) (PORT & 0xFF));
+        reply.put(15, (byte) (PORT >> 8));
+        reply.put(17, (byte) 1); // VersInfo
+        reply.put(18, (byte) (portAddress >> 8)); // NetSwitch
+        reply.put(19, (byte) ((portAddress >> 4) & 0x0F)); // SubSwitch
+        reply.put(21, (byte) 0xFF); // Oem unknown
+        reply.put(23, (byte) 0xE0); // Status1: indicators normal, addresses set by network
+        reply.put(26, name(SHORT_NAME, 18));
+        reply.put(44, name(LONG_NAME, 64));
+        reply.put(108, name("#0001 [0000] " + SHORT_NAME + " ready", 64));
+        reply.put(173, (byte) portAddresses.size());
+        for (int i = 0; i < portAddresses.size(); i++) {
+            reply.put(174 + i, (byte) 0x80); // PortTypes: outputs DMX512 from Art-Net
+            reply.put(182 + i, (byte) 0x80); // GoodOutputA: data is being output
+            reply.put(190 + i, (byte) (portAddresses.get(i) & 0x0F)); // SwOut
+        }
+        reply.put(200, (byte) 0x00); // Style: StNode
+        reply.put(207, ip); // BindIp
+        reply.put(211, (byte) bindIndex);
+        reply.put(212, (byte) 0x08); // Status2: supports 15-bit Port-Address
+        return reply;
+    }
+
+    private static byte[] name(String name, int length) {
+        byte[] bytes = new byte[length];
+        byte[] ascii = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ascii, 0, bytes, 0, Math.min(ascii.length, length - 1));
+        return bytes;
+    }
+
+    private static byte[] getIp(String ip) {
+        try {
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            if (address.length == 4)
+                return address;
+        } catch (UnknownHostException ignored) {}
+        return new byte[4];
+    }
+}
@@ -1,25 +1,539 @@
 package net.exenco.lightshow.show.artnet;
 
-import java.util.HashMap;
+import net.exenco.lightshow.util.ShowSettings;
+
+import java.lang.invoke.VarHandle;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class to buffer all input. Necessary for flawless communication between two runnables.
+ * Universes are indexed directly by their 15-bit Port-Address and have to be allocated before data is accepted.
+ * Each universe is double-buffered and published through a sequence number, so readers always copy a complete frame
+ * without locking while the receiving threads keep writing. Writes are serialized, so each protocol may feed the
+ * buffer from its own thread.
+ * Universes are synchronized through the sync address of their last packet: {@link #ART_SYNC} for Art-Net or the E1.31
+ * synchronization address. Once a sync for an address has been received, universes of that address are staged until
+ * the next sync of the same address commits all of them at once. If no sync arrives within {@link #SYNC_TIMEOUT} they
+ * are published immediately again. Universes without a sync address are always published immediately.
+ * Frames identical to the published one are not published again, unless the refresh interval has passed since the
+ * last publish. This way fixtures are only updated for actual changes and a periodic refresh.
+ * Up to {@link #MAX_SOURCES} senders per universe are merged according to the configured {@link MergeMode}, a sender
+ * is forgotten once it has not sent for the source timeout.
  */
 public class DmxBuffer {
-    private final HashMap<Integer, byte[]> data;
+    public static final int UNIVERSE_COUNT = 1 << 15;
+    public static final int UNIVERSE_SIZE = 512;
+    /* Art-Net falls back to non-synchronous mode after 4 seconds without ArtSync */
+    public static final long SYNC_TIMEOUT = TimeUnit.SECONDS.toNanos(4);
+    /* Sync address of ArtSync, E1.31 uses 1 to 63999 and 0 for unsynchronized data */
+    public static final int ART_SYNC = -1;
+    public static final int NO_SYNC = 0;
+    public static final int MAX_SOURCES = 4;
+    public static final int DEFAULT_PRIORITY = 100;
+
+    /**
+     * How the frames of multiple sources are combined into one universe.
+     * HTP takes the highest value of each slot, LTP the value of the source which changed a slot last and PRIORITY
+     * only considers the sources with the highest priority, merging those HTP.
+     * Sources sending their own priority, i.e. E1.31, always only merge with the sources of the highest priority.
+     */
+    public enum MergeMode {
+        HTP, LTP, PRIORITY
+    }
+
+    private volatile Universe[] universes = new Universe[UNIVERSE_COUNT];
+    private volatile Merge merge = new Merge(MergeMode.HTP, TimeUnit.SECONDS.toNanos(10), new int[0], new int[0]);
+    private volatile long refresh = TimeUnit.SECONDS.toNanos(1);
+
+    /* Odd while a commit is publishing staged universes */
+    private volatile int commits;
+    /* Time of the last sync by sync address, ArtSync at index 0 */
+    private final long[] lastSyncs = new long[1 << 16];
+    private final int[] staged = new int[UNIVERSE_COUNT];
+    private int stagedCount;
 
     public DmxBuffer() {
-        this.data = new HashMap<>();
+        Arrays.fill(lastSyncs, System.nanoTime() - SYNC_TIMEOUT);
+    }
+
+    /**
+     * Allocates frames for given Port-Addresses. Universes not contained are released, data of universes which stay
+     * allocated is kept.
+     * @param portAddresses to accept data for.
+     */
+    public void allocate(Collection<Integer> portAddresses) {
+        Universe[] current = this.universes;
+        Universe[] next = new Universe[UNIVERSE_COUNT];
+        for (int portAddress : portAddresses) {
+            if (portAddress < 0 || portAddress >= UNIVERSE_COUNT)
+                throw new IllegalArgumentException("There is no such universe: " + (portAddress + 1));
+            next[portAddress] = current[portAddress] != null ? current[portAddress] : new Universe();
+        }
+        this.universes = next;
+    }
+
+    /**
+     * Sets how often unchanged frames are published anyway.
+     * @param refresh interval in milliseconds, 0 or less to never publish unchanged frames.
+     */
+    public void setRefresh(int refresh) {
+        this.refresh = refresh > 0 ? TimeUnit.MILLISECONDS.toNanos(refresh) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Applies the merge settings. Sources already being merged pick up their new priority with their next packet.
+     * @param merge to apply, see {@link Merge#valueOf(ShowSettings.ArtNet.Merge)}.
+     */
+    public void setMerge(Merge merge) {
+        this.merge = merge;
+    }
+
+    /* Ids of senders without an IPv4 address, taken from 0.0.0.0/8 which no sender can have */
+    private static final Map<InetAddress, Integer> otherSourceIds = new ConcurrentHashMap<>();
+    private static final int MAX_OTHER_SOURCE_ID = 0xFFFFFF;
+
+    /**
+     * @param address of a sender.
+     * @return the id identifying the sender in {@link #setDmxData(DmxPacket, int)}, the IPv4 address itself or a
+     * distinct id assigned on first sight for any other address.
+     */
+    public static int getSourceId(InetAddress address) {
+        if (address instanceof Inet4Address)
+            return ByteBuffer.wrap(address.getAddress()).getInt();
+        Integer id = otherSourceIds.get(address);
+        if (id != null)
+            return id;
+        synchronized (otherSourceIds) {
+            return otherSourceIds.computeIfAbsent(address, key -> Math.min(otherSourceIds.size() + 1, MAX_OTHER_SOURCE_ID));
+        }
+    }
+
+    /**
+     * Merges the DMX data of given packet into the frame of its Port-Address. The frame is published immediately or
+     * staged for the next {@link #sync(int)} depending on whether its sync address is in use.
+     * @param packet currently wrapping a valid DMX datagram.
+     * @param sourceId of the sender, e.g. as returned by {@link #getSourceId(InetAddress)}.
+     * @return whether a new frame was published.
+     */
+    public synchronized boolean setDmxData(DmxPacket packet, int sourceId) {
+        int portAddress = packet.getPortAddress();
+        Universe universe = universes[portAddress];
+        if (universe == null)
+            return false;
+
+        Merge merge = this.merge;
+        long now = System.nanoTime();
+        universe.received++;
+        Source source = universe.getSource(sourceId, packet.getSequenceModulus(), now, merge.sourceTimeout());
+        if (source == null) {
+            universe.rejected++;
+            return false;
+        }
+
+        // Drop reordered and repeated packets before they reach any fixture
+        switch (source.sequenceTracker.check(packet.getSequence())) {
+            case SequenceTracker.DUPLICATE -> {
+                universe.duplicates++;
+                return false;
+            }
+            case SequenceTracker.STALE -> {
+                universe.stale++;
+                return false;
+            }
+            default -> universe.lost += source.sequenceTracker.getLost();
+        }
+        source.lastSeen = now;
+        int priority = packet.getPriority();
+        source.priority = priority >= 0 ? priority : merge.getPriority(sourceId);
+        source.sentPriority = priority >= 0;
+        universe.merge(packet, source, merge.mode());
+        universe.syncAddress = packet.getSyncAddress();
+        return update(portAddress, universe, now);
+    }
+
+    /**
+     * Removes a source which announced it stopped sending and merges the remaining ones.
+     * @param portAddress of the universe.
+     * @param sourceId of the sender.
+     * @return whether a new frame was published.
+     */
+    public synchronized boolean removeSource(int portAddress, int sourceId) {
+        Universe universe = universes[portAddress];
+        if (universe == null || !universe.removeSource(sourceId))
+            return false;
+        universe.mergeSources(merge.mode());
+        return update(portAddress, universe, System.nanoTime());
+    }
+
+    /**
+     * Publishes the working frame of a universe or stages it if its sync address is in use.
+     * @return whether a new frame was published.
+     */
+    private boolean update(int portAddress, Universe universe, long now) {
+        if (isSynchronous(universe.syncAddress, now)) {
+            if (!universe.staged) {
+                universe.staged = true;
+                staged[stagedCount++] = portAddress;
+            }
+            return false;
+        }
+        boolean published = stagedCount > 0 && commit(NO_SYNC, now);
+        return universe.publish(now, refresh) | published;
+    }
+
+    /**
+     * Handles a received ArtSync or E1.31 synchronization packet by committing the staged universes of its address.
+     * @param syncAddress {@link #ART_SYNC} or the E1.31 synchronization address.
+     * @return whether a new frame was published.
+     */
+    public synchronized boolean sync(int syncAddress) {
+        if (syncAddress == NO_SYNC)
+            return false;
+        long now = System.nanoTime();
+        lastSyncs[getSyncIndex(syncAddress)] = now;
+        return commit(syncAddress, now);
+    }
+
+    /**
+     * @return whether a sync of given address has been received within the {@link #SYNC_TIMEOUT}.
+     */
+    private boolean isSynchronous(int syncAddress, long now) {
+        return syncAddress != NO_SYNC && now - lastSyncs[getSyncIndex(syncAddress)] < SYNC_TIMEOUT;
+    }
+
+    private static int getSyncIndex(int syncAddress) {
+        return syncAddress == ART_SYNC ? 0 : syncAddress & 0xFFFF;
+    }
+
+    /**
+     * Publishes staged universes. Readers using {@link #beginRead()} never observe part of a commit.
+     * @param syncAddress to commit the universes of, or {@link #NO_SYNC} for those whose sync timed out.
+     * @return whether a new frame was published.
+     */
+    private boolean commit(int syncAddress, long now) {
+        if (stagedCount == 0)
+            return false;
+        boolean published = false;
+        long refresh = this.refresh;
+        Universe[] universes = this.universes;
+        int commits = this.commits;
+        this.commits = commits + 1;
+        int remaining = 0;
+        for (int i = 0; i < stagedCount; i++) {
+            Universe universe = universes[staged[i]];
+            if (universe == null || !universe.staged)
+                continue;
+            boolean due = syncAddress == NO_SYNC ? !isSynchronous(universe.syncAddress, now) : universe.syncAddress == syncAddress;
+            if (!due) {
+                staged[remaining++] = staged[i];
+                continue;
+            }
+            universe.staged = false;
+            published |= universe.publish(now, refresh);
+        }
+        stagedCount = remaining;
+        this.commits = commits + 2;
+        return published;
+    }
+
+    /**
+     * Starts reading multiple universes which have to belong to the same commit.
+     * @return stamp to pass to {@link #validateRead(int)} after all universes have been read.
+     */
+    public int beginRead() {
+        int commits;
+        while (((commits = this.commits) & 1) != 0)
+            Thread.onSpinWait();
+        return commits;
+    }
+
+    /**
+     * @param stamp returned by {@link #beginRead()}.
+     * @return whether no commit happened since the stamp was taken. If false, all universes have to be read again.
+     */
+    public boolean validateRead(int stamp) {
+        VarHandle.acquireFence();
+        return commits == stamp;
     }
 
-    public void setDmxData(int universeId, byte[] dmx) {
-        data.put(universeId, dmx);
+    /**
+     * Copies the latest complete frame of a universe.
+     * @param portAddress of the universe.
+     * @param frame to copy into, at least {@link #UNIVERSE_SIZE} long.
+     * @return the version of the copied frame, -1 if the universe is not allocated.
+     */
+    public int getDmxData(int portAddress, byte[] frame) {
+        Universe universe = universes[portAddress];
+        if (universe == null)
+            return -1;
+        return universe.read(frame);
     }
 
-    public byte[] getDmxData(int universeId) {
-        if(!data.containsKey(universeId))
-            data.put(universeId, new byte[512]);
+    /**
+     * Gets the packet statistics of a universe.
+     * @param portAddress of the universe.
+     * @return the statistics or null if the universe is not allocated.
+     */
+    public Statistics getStatistics(int portAddress) {
+        Universe universe = universes[portAddress];
+        if (universe == null)
+            return null;
+        return new Statistics(portAddress, universe.received, universe.stale, universe.duplicates, universe.lost, universe.rejected, universe.unchanged, universe.activeSources);
+    }
+
+    /**
+     * Packet counters of a universe since it has been allocated.
+     * @param portAddress of the universe.
+     * @param received number of DMX packets received.
+     * @param stale number of packets dropped for arriving after a newer one.
+     * @param duplicates number of packets dropped for repeating the last sequence number.
+     * @param lost number of packets missing in the sequence.
+     * @param rejected number of packets dropped because {@link #MAX_SOURCES} other sources were already sending.
+     * @param unchanged number of frames not published because they equal the published one.
+     * @param sources number of sources currently being merged.
+     */
+    public record Statistics(int portAddress, long received, long stale, long duplicates, long lost, long rejected, long unchanged, int sources) {}
+
+    /**
+     * Parsed merge settings.
+     * @param mode to merge sources with.
+     * @param sourceTimeout nanoseconds after which a silent source is forgotten.
+     * @param sources ids of sources with a configured priority.
+     * @param priorities of the sources.
+     */
+    public record Merge(MergeMode mode, long sourceTimeout, int[] sources, int[] priorities) {
+
+        /**
+         * @param settings to parse.
+         * @return the parsed settings.
+         * @throws IllegalArgumentException if the mode or a source is invalid.
+         */
+        public static Merge valueOf(ShowSettings.ArtNet.Merge settings) {
+            MergeMode mode;
+            try {
+                mode = MergeMode.valueOf(settings.mode().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("There is no such merge mode: " + settings.mode());
+            }
+
+            List<ShowSettings.ArtNet.Merge.Source> sourceList = settings.sources();
+            int[] sources = new int[sourceList.size()];
+            int[] priorities = new int[sourceList.size()];
+            for (int i = 0; i < sourceList.size(); i++) {
+                ShowSettings.ArtNet.Merge.Source source = sourceList.get(i);
+                try {
+                    sources[i] = getSourceId(InetAddress.getByName(source.ip()));
+                } catch (UnknownHostException e) {
+                    throw new IllegalArgumentException("There is no such source: " + source.ip());
+                }
+                priorities[i] = source.priority();
+            }
+            return new Merge(mode, TimeUnit.MILLISECONDS.toNanos(settings.sourceTimeout()), sources, priorities);
+        }
+
+        private int getPriority(int sourceId) {
+            for (int i = 0; i < sources.length; i++)
+                if (sources[i] == sourceId)
+                    return priorities[i];
+            return DEFAULT_PRIORITY;
+        }
+    }
+
+    private static final class Source {
+        private final byte[] frame = new byte[UNIVERSE_SIZE];
+        private final SequenceTracker sequenceTracker = new SequenceTracker();
+        private boolean active;
+        private int id;
+        private int priority;
+        /* Whether the priority came with the data instead of the merge settings */
+        private boolean sentPriority;
+        private long lastSeen;
+    }
+
+    private static final class Universe {
+        /* Latest state, only accessed by the writing thread */
+        private final byte[] working = new byte[UNIVERSE_SIZE];
+        private final byte[][] frames = {new byte[UNIVERSE_SIZE], new byte[UNIVERSE_SIZE]};
+        private volatile int version;
+        private long lastPublished;
+        private boolean staged;
+        private int syncAddress;
+
+        private final Source[] sources = new Source[MAX_SOURCES];
+        /* Written by the writing thread only, read by anyone */
+        private volatile int activeSources;
+        private volatile long received;
+        private volatile long stale;
+        private volatile long duplicates;
+        private volatile long lost;
+        private volatile long rejected;
+        private volatile long unchanged;
+
+        private Universe() {
+            for (int i = 0; i < MAX_SOURCES; i++)
+                sources[i] = new Source();
+        }
+
+        /**
+         * Finds the slot of a source, expiring sources which timed out and taking a free slot for new sources.
+         * @return the source or null if all slots are taken.
+         */
+        private Source getSource(int id, int sequenceModulus, long now, long timeout) {
+            Source free = null;
+            for (Source source : sources) {
+                if (source.active && now - source.lastSeen > timeout) {
+                    source.active = false;
+                    activeSources--;
+                }
+                if (source.active) {
+                    if (source.id == id)
+                        return source;
+                } else if (free == null) {
+                    free = source;
+                }
+            }
+            if (free == null)
+                return null;
+            free.active = true;
+            free.id = id;
+            free.lastSeen = now;
+            free.sequenceTracker.reset(sequenceModulus);
+            Arrays.fill(free.frame, (byte) 0);
+            activeSources++;
+            return free;
+        }
+
+        /**
+         * @return whether the source was active.
+         */
+        private boolean removeSource(int id) {
+            for (Source source : sources) {
+                if (source.active && source.id == id) {
+                    source.active = false;
+                    activeSources--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Stores the data of a packet for its source and merges all sources into the working frame.
+         */
+        private void merge(DmxPacket packet, Source source, MergeMode mode) {
+            int priority = getMergePriority(mode);
+            if (mode == MergeMode.LTP && activeSources > 1 && (priority < 0 || countSources(priority) > 1)) {
+                // Sources below the merged priority only keep their frame
+                if (source.priority < priority) {
+                    packet.copyDmx(source.frame);
+                    return;
+                }
+                // Only slots this source changed take over
+                int length = Math.min(packet.getLength(), UNIVERSE_SIZE);
+                for (int i = 0; i < length; i++) {
+                    byte value = (byte) packet.getDmx(i);
+                    if (value != source.frame[i]) {
+                        source.frame[i] = value;
+                        working[i] = value;
+                    }
+                }
+                return;
+            }
+            packet.copyDmx(source.frame);
+            mergeSources(mode);
+        }
+
+        /**
+         * Merges the frames of all active sources into the working frame. Only the sources of the merged priority are
+         * considered, a single one of them is copied as it is. Otherwise LTP keeps the working frame as it is.
+         */
+        private void mergeSources(MergeMode mode) {
+            if (activeSources == 0)
+                return;
+            int priority = getMergePriority(mode);
+            if (activeSources == 1 || (priority >= 0 && countSources(priority) == 1)) {
+                for (Source source : sources)
+                    if (source.active && source.priority >= priority)
+                        System.arraycopy(source.frame, 0, working, 0, UNIVERSE_SIZE);
+                return;
+            }
+            if (mode == MergeMode.LTP)
+                return;
+
+            Arrays.fill(working, (byte) 0);
+            for (Source other : sources) {
+                if (!other.active || other.priority < priority)
+                    continue;
+                byte[] frame = other.frame;
+                for (int i = 0; i < UNIVERSE_SIZE; i++)
+                    if ((frame[i] & 0xFF) > (working[i] & 0xFF))
+                        working[i] = frame[i];
+            }
+        }
+
+        /**
+         * @return the highest priority of all active sources if sources of lower priority are left out of the merge,
+         * which is the case in PRIORITY mode or as soon as any source sends its own priority, otherwise -1.
+         */
+        private int getMergePriority(MergeMode mode) {
+            boolean prioritised = mode == MergeMode.PRIORITY;
+            int priority = -1;
+            for (Source source : sources) {
+                if (source.active) {
+                    prioritised |= source.sentPriority;
+                    priority = Math.max(priority, source.priority);
+                }
+            }
+            return prioritised ? priority : -1;
+        }
+
+        private int countSources(int priority) {
+            int count = 0;
+            for (Source source : sources)
+                if (source.active && source.priority == priority)
+                    count++;
+            return count;
+        }
+
+        /**
+         * Copies the working frame into the buffer not currently being read and flips over to it.
+         * Skipped if the working frame equals the published one and the refresh interval has not passed yet. A refresh
+         * of {@link Long#MAX_VALUE} never passes.
+         * @return whether the frame was published.
+         */
+        private boolean publish(long now, long refresh) {
+            int version = this.version;
+            if ((refresh == Long.MAX_VALUE || now - lastPublished < refresh) && Arrays.equals(working, frames[version & 1])) {
+                unchanged++;
+                return false;
+            }
+            System.arraycopy(working, 0, frames[(version + 1) & 1], 0, UNIVERSE_SIZE);
+            this.version = version + 1;
+            this.lastPublished = now;
+            return true;
+        }
 
-        return data.get(universeId);
+        /**
+         * Copies the published frame, retrying if the writer flipped twice while copying.
+         */
+        private int read(byte[] frame) {
+            while (true) {
+                int version = this.version;
+                System.arraycopy(frames[version & 1], 0, frame, 0, UNIVERSE_SIZE);
+                VarHandle.acquireFence();
+                if (this.version == version)
+                    return version;
+                Thread.onSpinWait();
+            }
+        }
     }
 }
@@ -0,0 +1,48 @@
+package net.exenco.lightshow.show.artnet;
+
+/**
+ * Received packet carrying DMX data for a single universe, independent of the protocol it arrived with.
+ */
+public interface DmxPacket {
+
+    /**
+     * @return the zero-based universe the data belongs to.
+     */
+    int getPortAddress();
+
+    int getSequence();
+
+    /**
+     * @return the value the sequence number wraps at, {@link SequenceTracker#ART_NET} or {@link SequenceTracker#E131}.
+     */
+    int getSequenceModulus();
+
+    /**
+     * @return the priority sent along with the data, -1 if the protocol does not carry one.
+     */
+    int getPriority();
+
+    /**
+     * @return the address of the sync packets committing this data, {@link DmxBuffer#ART_SYNC} for Art-Net or
+     * {@link DmxBuffer#NO_SYNC} if the data is not synchronized.
+     */
+    int getSyncAddress();
+
+    /**
+     * @return number of DMX slots contained in the packet.
+     */
+    int getLength();
+
+    /**
+     * Gets a single DMX slot.
+     * @param slot zero-based index of the slot.
+     * @return the unsigned value of given slot.
+     */
+    int getDmx(int slot);
+
+    /**
+     * Copies the DMX data into given frame. Slots not contained in the packet are left untouched.
+     * @param frame to copy into.
+     */
+    void copyDmx(byte[] frame);
+}
@@ -0,0 +1,64 @@
+package net.exenco.lightshow.show.artnet;
+
+/**
+ * Tracks the sequence number of a stream to reject packets which arrive late or twice.
+ * Art-Net counts from 1 to 255 and wraps back to 1, 0 means the sender disabled sequencing. E1.31 counts through all
+ * 256 values.
+ * Like E1.31, a packet up to {@link #STALE_WINDOW} behind the last one is considered stale, anything further behind
+ * is treated as a restarted sender and accepted.
+ */
+public class SequenceTracker {
+    public static final int ACCEPTED = 0;
+    public static final int DUPLICATE = 1;
+    public static final int STALE = 2;
+
+    public static final int ART_NET = 255;
+    public static final int E131 = 256;
+
+    private static final int STALE_WINDOW = 20;
+
+    private int modulus = ART_NET;
+    private boolean started;
+    private int last;
+    private int lost;
+
+    /**
+     * Checks a received sequence number and remembers it if it is accepted.
+     * @param sequence of the received packet.
+     * @return {@link #ACCEPTED}, {@link #DUPLICATE} or {@link #STALE}.
+     */
+    public int check(int sequence) {
+        lost = 0;
+        if (!started || (modulus == ART_NET && (sequence == 0 || last == 0))) {
+            started = true;
+            last = sequence;
+            return ACCEPTED;
+        }
+        int difference = Math.floorMod(sequence - last, modulus);
+        if (difference == 0)
+            return DUPLICATE;
+        if (difference >= modulus - STALE_WINDOW)
+            return STALE;
+        lost = difference - 1;
+        last = sequence;
+        return ACCEPTED;
+    }
+
+    /**
+     * @return number of packets skipped by the last accepted packet.
+     */
+    public int getLost() {
+        return lost;
+    }
+
+    /**
+     * Forgets the stream, the next packet is always accepted.
+     * @param modulus the sequence wraps at, {@link #ART_NET} or {@link #E131}.
+     */
+    public void reset(int modulus) {
+        this.modulus = modulus;
+        started = false;
+        last = 0;
+        lost = 0;
+    }
+}
@@ -0,0 +1,151 @@
+package net.exenco.lightshow.show.artnet;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+
+/**
+ * Bounded cache of AES keys derived from the redirector key and a session salt.
+ * The redirector only changes its salt when it is restarted, so the expensive PBKDF2 derivation runs once per session
+ * instead of once per packet.
+ */
+public class SessionKeyCache {
+    public static final int SALT_LENGTH = 16;
+    private static final int ITERATIONS = 65536;
+    private static final int KEY_LENGTH = 128;
+    /* Unknown salts can be sent by anyone, so limit how often they may trigger a derivation */
+    private static final long MIN_DERIVE_INTERVAL = 1000;
+
+    /* Unverified salts seen since the last derivation, the most frequent one is derived next */
+    private static final int CANDIDATES = 4;
+
+    /* Keys which decrypted at least one packet */
+    private final byte[][] salts;
+    private final SecretKeySpec[] keys;
+    private final long[] lastUsed;
+    private long uses;
+    /* Slot of the most recently verified salt, it is never evicted */
+    private int current = -1;
+
+    /* Derived key waiting for a packet to decrypt with it */
+    private byte[] pendingSalt;
+    private SecretKeySpec pendingKey;
+    private final byte[][] candidates = new byte[CANDIDATES][];
+    private final int[] candidateHits = new int[CANDIDATES];
+    private long lastDerived;
+
+    private final char[] password;
+    private final SecretKeyFactory factory;
+    public SessionKeyCache(String password, int size) {
+        this.password = password.toCharArray();
+        this.salts = new byte[size][];
+        this.keys = new SecretKeySpec[size];
+        this.lastUsed = new long[size];
+        try {
+            this.factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the key for the salt at given position. A key for an unknown salt is only cached once
+     * {@link #confirm(SecretKeySpec)} reports that it decrypted a packet. Derivations are limited to one per interval
+     * and always pick the unknown salt seen most often since the last one, so a steady session wins over spoofed salts.
+     * @param buffer containing the salt.
+     * @param offset of the salt within buffer.
+     * @return the key or null if it could not be derived right now.
+     */
+    public SecretKeySpec getKey(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < salts.length; i++)
+            if (salts[i] != null && matches(salts[i], buffer, offset))
+                return keys[i];
+        if (pendingSalt != null && matches(pendingSalt, buffer, offset))
+            return pendingKey;
+
+        int candidate = addCandidate(buffer, offset);
+        long now = System.currentTimeMillis();
+        if (now - lastDerived < MIN_DERIVE_INTERVAL)
+            return null;
+        lastDerived = now;
+
+        int best = 0;
+        for (int i = 1; i < CANDIDATES; i++)
+            if (candidateHits[i] > candidateHits[best])
+                best = i;
+        byte[] salt = candidates[best];
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password, salt, ITERATIONS, KEY_LENGTH);
+            pendingKey = new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+            pendingSalt = salt;
+            spec.clearPassword();
+        } catch (InvalidKeySpecException e) {
+            throw new RuntimeException(e);
+        }
+        Arrays.fill(candidates, null);
+        Arrays.fill(candidateHits, 0);
+        return best == candidate ? pendingKey : null;
+    }
+
+    /**
+     * Marks a key returned by {@link #getKey(ByteBuffer, int)} as verified after it decrypted a packet.
+     * @param key which decrypted the packet.
+     */
+    public void confirm(SecretKeySpec key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                lastUsed[i] = ++uses;
+                current = i;
+                return;
+            }
+        }
+        if (key != pendingKey)
+            return;
+
+        // Replace the least recently used entry other than the current session
+        int eldest = -1;
+        for (int i = 0; i < salts.length; i++)
+            if (i != current && (eldest < 0 || lastUsed[i] < lastUsed[eldest]))
+                eldest = i;
+        if (eldest < 0)
+            eldest = 0;
+        salts[eldest] = pendingSalt;
+        keys[eldest] = pendingKey;
+        lastUsed[eldest] = ++uses;
+        current = eldest;
+        pendingSalt = null;
+        pendingKey = null;
+    }
+
+    /**
+     * Counts a sighting of an unknown salt, replacing the least seen candidate if it is new.
+     * @return slot of the salt among the candidates.
+     */
+    private int addCandidate(ByteBuffer buffer, int offset) {
+        int least = 0;
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (candidates[i] != null && matches(candidates[i], buffer, offset)) {
+                candidateHits[i]++;
+                return i;
+            }
+            if (candidateHits[i] < candidateHits[least])
+                least = i;
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        buffer.get(offset, salt);
+        candidates[least] = salt;
+        candidateHits[least] = 1;
+        return least;
+    }
+
+    private static boolean matches(byte[] salt, ByteBuffer buffer, int offset) {
+        for (int i = 0; i < SALT_LENGTH; i++)
+            if (salt[i] != buffer.get(offset + i))
+                return false;
+        return true;
+    }
+}
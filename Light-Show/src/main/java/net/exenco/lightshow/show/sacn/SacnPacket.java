@@ -0,0 +1,180 @@
+package net.exenco.lightshow.show.sacn;
+
+import net.exenco.lightshow.show.artnet.DmxBuffer;
+import net.exenco.lightshow.show.artnet.DmxPacket;
+import net.exenco.lightshow.show.artnet.SequenceTracker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable flyweight view over a received E1.31 (sACN) datagram.
+ * Like {@link net.exenco.lightshow.show.artnet.ArtNetPacket} it validates in place and reads directly from the
+ * wrapped buffer, so it is only valid until the buffer is reused for the next datagram.
+ */
+public class SacnPacket implements DmxPacket {
+    public static final byte[] PACKET_IDENTIFIER = "ASC-E1.17\0\0\0".getBytes();
+
+    public static final int VECTOR_ROOT_DATA = 0x04;
+    public static final int VECTOR_ROOT_EXTENDED = 0x08;
+    public static final int VECTOR_FRAMING_DATA = 0x02;
+    public static final int VECTOR_FRAMING_SYNC = 0x01;
+
+    public static final int HEADER_LENGTH = 126;
+    public static final int SYNC_LENGTH = 49;
+    public static final int MAX_DMX_LENGTH = 512;
+    public static final int MAX_UNIVERSE = 63999;
+
+    private static final int OPTION_PREVIEW = 0x80;
+    private static final int OPTION_TERMINATED = 0x40;
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private boolean sync;
+
+    /**
+     * Points this view at the datagram between position and limit of given buffer.
+     * The position and limit of the buffer are not modified.
+     * @param buffer containing the received datagram.
+     * @return whether the datagram is a valid E1.31 data or synchronization packet.
+     */
+    public boolean wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.length = buffer.remaining();
+
+        if (length < SYNC_LENGTH || getShort(0) != 0x0010 || getShort(2) != 0x0000 || !isValidIdentifier())
+            return false;
+        return switch (getInt(18)) {
+            case VECTOR_ROOT_DATA -> {
+                this.sync = false;
+                if (length < HEADER_LENGTH || getInt(40) != VECTOR_FRAMING_DATA)
+                    yield false;
+                // DMP layer: set property, one byte per slot starting at address 0
+                if (get(117) != 0x02 || get(118) != 0xA1 || getShort(119) != 0x0000 || getShort(121) != 0x0001)
+                    yield false;
+                int universe = getUniverse();
+                int count = getShort(123);
+                yield universe >= 1 && universe <= Math.min(MAX_UNIVERSE, DmxBuffer.UNIVERSE_COUNT)
+                        && count >= 1 && count <= MAX_DMX_LENGTH + 1 && HEADER_LENGTH - 1 + count <= length;
+            }
+            case VECTOR_ROOT_EXTENDED -> {
+                this.sync = true;
+                yield getInt(40) == VECTOR_FRAMING_SYNC;
+            }
+            default -> false;
+        };
+    }
+
+    private boolean isValidIdentifier() {
+        for (int i = 0; i < PACKET_IDENTIFIER.length; i++)
+            if (buffer.get(offset + 4 + i) != PACKET_IDENTIFIER[i])
+                return false;
+        return true;
+    }
+
+    private int get(int index) {
+        return buffer.get(offset + index) & 0xFF;
+    }
+
+    private int getShort(int index) {
+        return get(index) << 8 | get(index + 1);
+    }
+
+    private int getInt(int index) {
+        return getShort(index) << 16 | getShort(index + 2);
+    }
+
+    public boolean isData() {
+        return !sync;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Folds the 16 byte CID of the sender into an id for {@link DmxBuffer#setDmxData(DmxPacket, int)}.
+     * @return the id of the sender.
+     */
+    public int getSourceId() {
+        int id = 0;
+        for (int i = 0; i < 16; i += 4)
+            id = 31 * id + getInt(22 + i);
+        return id;
+    }
+
+    @Override
+    public int getPriority() {
+        return get(108);
+    }
+
+    /**
+     * @return the synchronization address of a data packet, or the address a synchronization packet commits.
+     */
+    @Override
+    public int getSyncAddress() {
+        return sync ? getShort(45) : getShort(109);
+    }
+
+    @Override
+    public int getSequence() {
+        return sync ? get(44) : get(111);
+    }
+
+    @Override
+    public int getSequenceModulus() {
+        return SequenceTracker.E131;
+    }
+
+    /**
+     * @return whether the data is only meant for visualisers and must not be output.
+     */
+    public boolean isPreview() {
+        return (get(112) & OPTION_PREVIEW) != 0;
+    }
+
+    /**
+     * @return whether the sender stopped sending this universe.
+     */
+    public boolean isTerminated() {
+        return (get(112) & OPTION_TERMINATED) != 0;
+    }
+
+    /**
+     * @return the one-based E1.31 universe.
+     */
+    public int getUniverse() {
+        return getShort(113);
+    }
+
+    /**
+     * @return the zero-based universe as used by Art-Net.
+     */
+    @Override
+    public int getPortAddress() {
+        return getUniverse() - 1;
+    }
+
+    /**
+     * @return the START code, 0 for DMX data.
+     */
+    public int getStartCode() {
+        return get(125);
+    }
+
+    @Override
+    public int getLength() {
+        return getShort(123) - 1;
+    }
+
+    @Override
+    public int getDmx(int slot) {
+        return get(HEADER_LENGTH + slot);
+    }
+
+    @Override
+    public void copyDmx(byte[] frame) {
+        buffer.get(offset + HEADER_LENGTH, frame, 0, Math.min(getLength(), frame.length));
+    }
+}
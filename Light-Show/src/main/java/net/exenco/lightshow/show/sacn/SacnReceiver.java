@@ -0,0 +1,252 @@
+package net.exenco.lightshow.show.sacn;
+
+import net.exenco.lightshow.show.stage.StageManager;
+import net.exenco.lightshow.util.ShowSettings;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives E1.31 (sACN) alongside Art-Net. Only the multicast groups of patched universes are joined, so all other
+ * universes on the network are already filtered by the network interface and the kernel.
+ */
+public class SacnReceiver {
+    public static final int PORT = 5568;
+    private static final int PACKET_LENGTH = 638;
+
+    private volatile boolean running;
+    private BukkitRunnable bukkitRunnable;
+    private DatagramChannel datagramChannel;
+    private Selector selector;
+    private NetworkInterface networkInterface;
+    /* Joined multicast groups by universe */
+    private final Map<Integer, MembershipKey> memberships = new TreeMap<>();
+
+    private final AtomicLong receivedPackets = new AtomicLong();
+    private final AtomicLong localDrops = new AtomicLong();
+
+    private final StageManager stageManager;
+    private final ShowSettings showSettings;
+    private final Logger logger;
+    public SacnReceiver(StageManager stageManager, ShowSettings showSettings) {
+        this.stageManager = stageManager;
+        this.showSettings = showSettings;
+        this.logger = stageManager.getLightShow().getLogger();
+    }
+
+    public boolean isRunning() {
+        return bukkitRunnable != null || datagramChannel != null;
+    }
+
+    public boolean start() {
+        if(this.isRunning()) {
+            logger.warning("Could not start sACN receiver: Already running!");
+            return false;
+        }
+
+        ShowSettings.ArtNet settings = showSettings.artNet();
+        try {
+            this.networkInterface = getNetworkInterface(settings);
+            if (networkInterface == null) {
+                logger.warning("Cannot start sACN: No network interface found!");
+                return false;
+            }
+
+            // Start channel
+            datagramChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+            datagramChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (settings.receiver().receiveBuffer() > 0)
+                datagramChannel.setOption(StandardSocketOptions.SO_RCVBUF, settings.receiver().receiveBuffer());
+            datagramChannel.bind(new InetSocketAddress(PORT));
+            datagramChannel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            joinUniverses();
+            datagramChannel.configureBlocking(false);
+
+            selector = Selector.open();
+            datagramChannel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot start sACN!");
+            e.printStackTrace();
+            closeQuietly();
+            return false;
+        }
+
+        // Start
+        this.receivedPackets.set(0);
+        this.localDrops.set(0);
+        this.running = true;
+        this.bukkitRunnable = new ReceiverRunnable(datagramChannel, selector);
+        bukkitRunnable.runTaskAsynchronously(stageManager.getLightShow());
+        logger.info("Starting sACN for universes " + memberships.keySet() + ".");
+        return true;
+    }
+
+    /**
+     * Joins the multicast groups of universes added to the patch and leaves those of removed ones.
+     */
+    public void updateUniverses() {
+        if (datagramChannel == null)
+            return;
+        try {
+            joinUniverses();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not update sACN universes: " + e.getMessage());
+        }
+    }
+
+    private void joinUniverses() throws IOException {
+        TreeSet<Integer> universes = new TreeSet<>();
+        for (ShowSettings.DmxEntry dmxEntry : showSettings.dmxEntryList())
+            universes.add(dmxEntry.universe());
+
+        Iterator<Map.Entry<Integer, MembershipKey>> iterator = memberships.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, MembershipKey> entry = iterator.next();
+            if (!universes.contains(entry.getKey())) {
+                entry.getValue().drop();
+                iterator.remove();
+            }
+        }
+        for (int universe : universes) {
+            if (memberships.containsKey(universe))
+                continue;
+            if (universe < 1 || universe > SacnPacket.MAX_UNIVERSE) {
+                logger.warning("Universe " + universe + " cannot be received through sACN.");
+                continue;
+            }
+            memberships.put(universe, datagramChannel.join(getGroup(universe), networkInterface));
+        }
+    }
+
+    public boolean stop() {
+        if(!this.isRunning()) {
+            logger.warning("Could not stop sACN receiver: Not currently running.");
+            return false;
+        }
+        this.running = false;
+
+        if (selector != null)
+            selector.wakeup();
+        closeQuietly();
+        bukkitRunnable.cancel();
+        bukkitRunnable = null;
+
+        logger.info("Stopped sACN. Received " + receivedPackets.get() + " packets, dropped " + localDrops.get() + " locally.");
+        return true;
+    }
+
+    private void closeQuietly() {
+        try {
+            if (datagramChannel != null)
+                datagramChannel.close();
+            if (selector != null)
+                selector.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+        datagramChannel = null;
+        selector = null;
+        memberships.clear();
+    }
+
+    /**
+     * @return number of datagrams received since start.
+     */
+    public long getReceivedPackets() {
+        return receivedPackets.get();
+    }
+
+    /**
+     * @return number of datagrams discarded by the plugin since start.
+     */
+    public long getLocalDrops() {
+        return localDrops.get();
+    }
+
+    /**
+     * Uses the configured interface name, or the interface owning the Art-Net address. If the address is not owned by a
+     * single interface, e.g. the wildcard address, the first multicast capable interface with an IPv4 address is used.
+     */
+    private static NetworkInterface getNetworkInterface(ShowSettings.ArtNet settings) throws IOException {
+        String name = settings.sacn().networkInterface();
+        if (!name.isEmpty())
+            return NetworkInterface.getByName(name);
+        NetworkInterface networkInterface = NetworkInterface.getByInetAddress(InetAddress.getByName(settings.address().ip()));
+        if (networkInterface != null)
+            return networkInterface;
+        NetworkInterface loopback = null;
+        for (NetworkInterface candidate : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!candidate.isUp() || !candidate.supportsMulticast())
+                continue;
+            if (Collections.list(candidate.getInetAddresses()).stream().noneMatch(address -> address instanceof Inet4Address))
+                continue;
+            if (!candidate.isLoopback())
+                return candidate;
+            if (loopback == null)
+                loopback = candidate;
+        }
+        return loopback;
+    }
+
+    /**
+     * @param universe one-based E1.31 universe.
+     * @return the multicast group 239.255.hi.lo the universe is sent to.
+     */
+    public static InetAddress getGroup(int universe) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[] {(byte) 239, (byte) 255, (byte) (universe >> 8), (byte) universe});
+    }
+
+    /**
+     * Non-blocking receiver draining all queued datagrams on every wakeup, like the Art-Net channel receiver.
+     */
+    private class ReceiverRunnable extends BukkitRunnable {
+
+        private final DatagramChannel datagramChannel;
+        private final Selector selector;
+
+        private ReceiverRunnable(DatagramChannel datagramChannel, Selector selector) {
+            this.datagramChannel = datagramChannel;
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            // One byte larger than the biggest accepted packet so truncated datagrams can be detected
+            ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_LENGTH + 1);
+            try {
+                while(running) {
+                    if (selector.select() > 0) {
+                        selector.selectedKeys().clear();
+                        while (running) {
+                            buffer.clear();
+                            if (datagramChannel.receive(buffer) == null)
+                                break;
+                            buffer.flip();
+                            receivedPackets.incrementAndGet();
+                            if (buffer.limit() == buffer.capacity() || !stageManager.receiveSacn(buffer))
+                                localDrops.incrementAndGet();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if(running)
+                    logger.log(Level.WARNING, e.getMessage(), e.getCause());
+            }
+        }
+    }
+}
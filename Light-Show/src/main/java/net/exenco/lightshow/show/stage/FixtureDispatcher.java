@@ -0,0 +1,94 @@
+package net.exenco.lightshow.show.stage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies the collected fixtures of a {@link FixtureTable} on a dedicated, bounded pool instead of the common pool.
+ * The fixtures are split into balanced chunks, one per thread, the calling thread works on the last chunk itself.
+ * Chunks are reused, so dispatching allocates nothing.
+ */
+final class FixtureDispatcher {
+    /* Fewer fixtures than this per chunk are not worth handing off */
+    private static final int MIN_CHUNK_SIZE = 16;
+
+    private final ThreadPoolExecutor executor;
+    private final Chunk[] chunks;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile Thread waiter;
+    private volatile RuntimeException failure;
+    private FixtureTable table;
+
+    /**
+     * @param threads number of threads applying fixtures, including the calling thread.
+     */
+    FixtureDispatcher(int threads) {
+        int workers = Math.max(1, threads - 1);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(workers), runnable -> {
+            Thread thread = new Thread(runnable, "Light-Show Fixtures #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, executor) -> runnable.run()); // Never drop a chunk, even after shutdown
+        this.chunks = new Chunk[Math.max(1, threads)];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = new Chunk();
+    }
+
+    /**
+     * Applies all fixtures collected by the table and waits until they are done.
+     * @param table whose {@link FixtureTable#collect()} has just been called.
+     * @param count number of collected fixtures.
+     */
+    void dispatch(FixtureTable table, int count) {
+        int chunkCount = Math.min(chunks.length, count / MIN_CHUNK_SIZE);
+        if (chunkCount <= 1) {
+            table.apply(0, count);
+            return;
+        }
+
+        this.table = table;
+        this.failure = null;
+        this.waiter = Thread.currentThread();
+        remaining.set(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            chunk.from = (int) ((long) count * i / chunkCount);
+            chunk.to = (int) ((long) count * (i + 1) / chunkCount);
+            if (i < chunkCount - 1)
+                executor.execute(chunk);
+            else
+                chunk.run();
+        }
+        while (remaining.get() > 0)
+            LockSupport.park(this);
+
+        RuntimeException failure = this.failure;
+        if (failure != null)
+            throw failure;
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private final class Chunk implements Runnable {
+        private int from;
+        private int to;
+
+        @Override
+        public void run() {
+            try {
+                table.apply(from, to);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                if (remaining.decrementAndGet() == 0)
+                    LockSupport.unpark(waiter);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package net.exenco.lightshow.show.stage;
+
+import com.google.gson.JsonObject;
+import net.exenco.lightshow.show.stage.fixtures.ShowFixture;
+
+/**
+ * Creates a fixture of a registered type, usually the constructor of the fixture, e.g. {@code BeaconFixture::new}.
+ */
+@FunctionalInterface
+public interface FixtureFactory {
+    ShowFixture create(JsonObject configJson, StageManager stageManager);
+}
@@ -0,0 +1,105 @@
+package net.exenco.lightshow.show.stage;
+
+import net.exenco.lightshow.show.artnet.DmxBuffer;
+import net.exenco.lightshow.show.stage.fixtures.DmxSlice;
+import net.exenco.lightshow.show.stage.fixtures.ShowFixture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The patch of all universes compiled into one flat array of fixtures.
+ * Every frame {@link #collect()} determines the fixtures to apply, which are then applied in ranges through
+ * {@link #apply(int, int)}. Each fixture reads its channels through its own {@link DmxSlice} on the frame of its
+ * universe, so neither step allocates.
+ */
+final class FixtureTable {
+
+    /**
+     * @param universe Port-Address of the universe.
+     * @param offset first channel of the fixture within the universe.
+     * @param fixture the fixture itself.
+     * @param slice view on the channels of the fixture.
+     */
+    record PatchedFixture(int universe, int offset, ShowFixture fixture, DmxSlice slice) {}
+
+    private final PatchedFixture[] fixtures;
+    private final UniversePatch[] universes;
+    /* Time in milliseconds from which each fixture may be selected for its tick again */
+    private final long[] tickDue;
+
+    private final boolean[] dirty;
+    private final int[] pending;
+    private int pendingCount;
+
+    /**
+     * @param dmxMap fixtures by universe and first channel. Every fixture has to fit into its universe.
+     */
+    FixtureTable(Map<Integer, ? extends Map<Integer, ? extends List<ShowFixture>>> dmxMap) {
+        List<PatchedFixture> fixtureList = new ArrayList<>();
+        List<UniversePatch> universeList = new ArrayList<>();
+        for (Map.Entry<Integer, ? extends Map<Integer, ? extends List<ShowFixture>>> universe : dmxMap.entrySet()) {
+            byte[] data = new byte[DmxBuffer.UNIVERSE_SIZE];
+            int from = fixtureList.size();
+            for (Map.Entry<Integer, ? extends List<ShowFixture>> channel : universe.getValue().entrySet()) {
+                for (ShowFixture fixture : channel.getValue()) {
+                    DmxSlice slice = new DmxSlice().wrap(data, channel.getKey(), fixture.getDmxSize());
+                    fixtureList.add(new PatchedFixture(universe.getKey(), channel.getKey(), fixture, slice));
+                }
+            }
+            universeList.add(new UniversePatch(universe.getKey(), data, fixtureList, from, fixtureList.size()));
+        }
+        this.fixtures = fixtureList.toArray(new PatchedFixture[0]);
+        this.universes = universeList.toArray(new UniversePatch[0]);
+        this.tickDue = new long[fixtures.length];
+        this.dirty = new boolean[fixtures.length];
+        this.pending = new int[fixtures.length];
+    }
+
+    UniversePatch[] getUniverses() {
+        return universes;
+    }
+
+    /**
+     * Determines the fixtures to apply for the frames just read: those whose channels changed and periodic ones whose
+     * tick is due. A periodic fixture selected for its tick is not selected again for its tick size, even if it did not
+     * use up its tick, e.g. because it is switched off.
+     * @return number of fixtures to apply.
+     */
+    int collect() {
+        pendingCount = 0;
+        for (UniversePatch universe : universes)
+            universe.collect(this);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < fixtures.length; i++) {
+            ShowFixture fixture = fixtures[i].fixture();
+            if (dirty[i] || now < tickDue[i] || !fixture.isPeriodic() || !fixture.isTickDue())
+                continue;
+            mark(i);
+            tickDue[i] = now + fixture.getTickSize();
+        }
+        for (int i = 0; i < pendingCount; i++)
+            dirty[pending[i]] = false;
+        return pendingCount;
+    }
+
+    void mark(int fixture) {
+        if (dirty[fixture])
+            return;
+        dirty[fixture] = true;
+        pending[pendingCount++] = fixture;
+    }
+
+    /**
+     * Applies a range of the fixtures determined by {@link #collect()}. Distinct ranges may be applied concurrently.
+     * @param from first index into the collected fixtures.
+     * @param to index after the last collected fixture to apply.
+     */
+    void apply(int from, int to) {
+        for (int i = from; i < to; i++) {
+            PatchedFixture patchedFixture = fixtures[pending[i]];
+            patchedFixture.fixture().applyState(patchedFixture.slice());
+        }
+    }
+}
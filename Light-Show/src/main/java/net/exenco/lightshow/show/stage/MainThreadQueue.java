@@ -0,0 +1,108 @@
+package net.exenco.lightshow.show.stage;
+
+import net.exenco.lightshow.LightShow;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Changes to the actual world, which may only be done on the main thread, submitted from any thread.
+ * A single task per tick applies them until the tick budget is used up, anything left over is applied on the next tick.
+ * Repeated writes to the same block before it was applied only apply the last one.
+ */
+public final class MainThreadQueue {
+    private final Queue<Runnable> operations = new ConcurrentLinkedQueue<>();
+    /* Latest block data by position, the queue holds every position once in the order they were first written */
+    private final Map<Location, BlockData> blocks = new ConcurrentHashMap<>();
+    private final Queue<Location> blockOrder = new ConcurrentLinkedQueue<>();
+
+    private final LightShow lightShow;
+    private BukkitTask task;
+    private long budget;
+
+    MainThreadQueue(LightShow lightShow) {
+        this.lightShow = lightShow;
+    }
+
+    /**
+     * Starts applying submitted changes every tick.
+     * @param budget time per tick in microseconds, at least one change is applied per tick.
+     */
+    void start(int budget) {
+        stop();
+        this.budget = budget * 1000L;
+        this.task = Bukkit.getScheduler().runTaskTimer(lightShow, this::run, 1, 1);
+    }
+
+    /**
+     * Stops applying changes and discards those not applied yet.
+     */
+    void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        operations.clear();
+        blocks.clear();
+        blockOrder.clear();
+    }
+
+    /**
+     * Sets a block in the world including physics, e.g. to power neighbouring redstone.
+     * @param world of the block.
+     * @param x coordinate of the block.
+     * @param y coordinate of the block.
+     * @param z coordinate of the block.
+     * @param blockData to set, must not be modified afterwards.
+     */
+    public void setBlockData(World world, int x, int y, int z, BlockData blockData) {
+        Location location = new Location(world, x, y, z);
+        if (blocks.put(location, blockData) == null)
+            blockOrder.add(location);
+    }
+
+    /**
+     * Dispatches a command as console.
+     * @param command to dispatch, without leading slash.
+     */
+    public void dispatchCommand(String command) {
+        operations.add(() -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command));
+    }
+
+    /**
+     * Runs any other operation requiring the main thread.
+     * @param operation to run.
+     */
+    public void submit(Runnable operation) {
+        operations.add(operation);
+    }
+
+    private void run() {
+        long deadline = System.nanoTime() + budget;
+        do {
+            Runnable operation = operations.poll();
+            if (operation != null) {
+                try {
+                    operation.run();
+                } catch (RuntimeException e) {
+                    lightShow.getLogger().warning("Could not apply world change: " + e.getMessage());
+                }
+                continue;
+            }
+            Location location = blockOrder.poll();
+            if (location == null)
+                return;
+            // A write after this removal queues the position again
+            BlockData blockData = blocks.remove(location);
+            if (blockData != null)
+                location.getBlock().setBlockData(blockData, true);
+        } while (System.nanoTime() < deadline);
+    }
+}
@@ -0,0 +1,106 @@
+package net.exenco.lightshow.show.stage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Updates all fixtures at a fixed rate independent of how many packets arrive.
+ * Every universe received between two frames is applied in a single pass. When no new frame was published for the
+ * idle timeout the loop parks itself until the next one is.
+ */
+public class RenderLoop implements Runnable {
+    private volatile boolean idle;
+    private volatile long lastReceived;
+    private volatile Thread thread;
+
+    private long periodNanos;
+    private long idleNanos;
+
+    private final StageManager stageManager;
+    public RenderLoop(StageManager stageManager) {
+        this.stageManager = stageManager;
+    }
+
+    /**
+     * Starts the render thread.
+     * @param rate frames per second.
+     * @param idleTimeout milliseconds without data after which the loop parks.
+     */
+    public void start(int rate, int idleTimeout) {
+        if (isRunning())
+            return;
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleTimeout));
+        this.lastReceived = System.nanoTime() - idleNanos - 1;
+
+        Thread thread = new Thread(this, "Light-Show Render");
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the render thread and waits for the current frame to finish.
+     */
+    public void stop() {
+        Thread thread = this.thread;
+        if (thread == null)
+            return;
+        this.thread = null;
+        LockSupport.unpark(thread);
+        if (thread == Thread.currentThread())
+            return;
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Notifies the loop that a new frame has been published. Called from the receiving threads.
+     */
+    public void signal() {
+        lastReceived = System.nanoTime();
+        if (idle)
+            LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        Thread current = Thread.currentThread();
+        long next = System.nanoTime();
+        while (thread == current) {
+            idle = true;
+            if (System.nanoTime() - lastReceived > idleNanos) {
+                LockSupport.park(this);
+                next = System.nanoTime();
+                continue;
+            }
+            idle = false;
+
+            try {
+                stageManager.updateFixtures();
+            } catch (RuntimeException e) {
+                stageManager.getLightShow().getLogger().log(Level.WARNING, "Could not update fixtures!", e);
+            }
+
+            next += periodNanos;
+            long wait = next - System.nanoTime();
+            if (wait <= 0) {
+                next = System.nanoTime(); // Fell behind, skip missed frames instead of bursting
+                continue;
+            }
+            while (wait > 0 && thread == current) {
+                LockSupport.parkNanos(this, wait);
+                wait = next - System.nanoTime();
+            }
+        }
+        idle = false;
+    }
+}
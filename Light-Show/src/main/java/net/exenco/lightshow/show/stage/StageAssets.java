@@ -0,0 +1,110 @@
+package net.exenco.lightshow.show.stage;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.exenco.lightshow.show.song.ShowSong;
+import net.exenco.lightshow.util.ConfigHandler;
+import net.exenco.lightshow.util.ShowSettings;
+import net.exenco.lightshow.util.api.LogoApi;
+import net.minecraft.world.item.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Everything read from files for loading the stage, shared by all fixtures instead of every fixture reading it itself.
+ * All files are parsed in parallel once per load, the resulting maps are immutable.
+ * @param dmxEntries patch files by name.
+ * @param logos by id.
+ * @param fireworks firework rockets by id.
+ * @param songs by id.
+ */
+public record StageAssets(Map<String, JsonArray> dmxEntries, Map<Integer, LogoApi.Logo> logos, Map<Integer, List<ItemStack>> fireworks, Map<Integer, ShowSong> songs) {
+
+    /**
+     * Parses all assets in parallel.
+     * @param configHandler to read the files with.
+     * @param dmxEntryList entries whose patch files to read.
+     * @return the parsed assets.
+     */
+    public static StageAssets load(ConfigHandler configHandler, List<ShowSettings.DmxEntry> dmxEntryList) {
+        CompletableFuture<Map<String, JsonArray>> dmxEntries = CompletableFuture.supplyAsync(() -> loadDmxEntries(configHandler, dmxEntryList));
+        CompletableFuture<Map<Integer, LogoApi.Logo>> logos = CompletableFuture.supplyAsync(() ->
+                loadById(configHandler, new File("plugins//Light-Show//Logos"), LogoApi.Logo::new));
+        CompletableFuture<Map<Integer, List<ItemStack>>> fireworks = CompletableFuture.supplyAsync(() -> loadFireworks(configHandler));
+        CompletableFuture<Map<Integer, ShowSong>> songs = CompletableFuture.supplyAsync(() ->
+                loadById(configHandler, new File("plugins//Light-Show//Songs"), jsonObject -> new ShowSong(jsonObject.get("Id").getAsInt(), jsonObject)));
+        try {
+            return new StageAssets(dmxEntries.join(), logos.join(), fireworks.join(), songs.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    private static Map<String, JsonArray> loadDmxEntries(ConfigHandler configHandler, List<ShowSettings.DmxEntry> dmxEntryList) {
+        Map<String, JsonArray> dmxEntries = new HashMap<>();
+        dmxEntryList.stream().map(ShowSettings.DmxEntry::filename).distinct().parallel()
+                .map(filename -> Map.entry(filename, configHandler.getDmxEntriesJson(filename)))
+                .toList().forEach(entry -> dmxEntries.put(entry.getKey(), entry.getValue()));
+        return Collections.unmodifiableMap(dmxEntries);
+    }
+
+    /**
+     * Parses every json file in a directory, files which cannot be parsed are skipped.
+     */
+    private static <T> Map<Integer, T> loadById(ConfigHandler configHandler, File directory, Function<JsonObject, T> parser) {
+        configHandler.createDirectory(directory);
+
+        Map<Integer, T> map = new HashMap<>();
+        Arrays.stream(Objects.requireNonNull(directory.listFiles())).parallel()
+                .filter(file -> file.getName().endsWith(".json"))
+                .<Map.Entry<Integer, T>>map(file -> {
+                    try {
+                        JsonObject jsonObject = configHandler.getJsonFromFile(file).getAsJsonObject();
+                        return Map.entry(jsonObject.get("Id").getAsInt(), parser.apply(jsonObject));
+                    } catch(Exception ignored) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .toList().forEach(entry -> map.put(entry.getKey(), entry.getValue()));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static Map<Integer, List<ItemStack>> loadFireworks(ConfigHandler configHandler) {
+        File config = new File("plugins//Light-Show//fireworks.json");
+        if(!config.exists()) {
+            try {
+                if(!config.createNewFile())
+                    throw new IOException("Could not create fireworks.json!");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        Map<Integer, List<ItemStack>> fireworksMap = new HashMap<>();
+        JsonElement json = configHandler.getJsonFromFile(config);
+        if(json == null || !json.isJsonArray())
+            return Collections.emptyMap();
+        for(JsonElement jsonElement : json.getAsJsonArray()) {
+            JsonObject jsonObject = jsonElement.getAsJsonObject();
+            int id = jsonObject.get("Id").getAsInt();
+
+            JsonObject itemJson = new JsonObject();
+            itemJson.addProperty("Item", "minecraft:firework_rocket");
+            itemJson.addProperty("Count", 1);
+            itemJson.addProperty("Nbt", jsonObject.get("FireworkNbt").getAsString());
+            ItemStack itemStack = ConfigHandler.getItemStackFromJsonObject(itemJson);
+            fireworksMap.computeIfAbsent(id, key -> new ArrayList<>()).add(itemStack);
+        }
+        fireworksMap.replaceAll((id, itemStacks) -> List.copyOf(itemStacks));
+        return Collections.unmodifiableMap(fireworksMap);
+    }
+}
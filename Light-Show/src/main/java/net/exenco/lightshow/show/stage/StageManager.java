@@ -7,27 +7,47 @@ import net.exenco.lightshow.LightShow;
 import net.exenco.lightshow.show.artnet.ArtNetPacket;
 import net.exenco.lightshow.show.artnet.DmxBuffer;
 import net.exenco.lightshow.show.artnet.ArtNetReceiver;
+import net.exenco.lightshow.show.sacn.SacnPacket;
+import net.exenco.lightshow.show.sacn.SacnReceiver;
 import net.exenco.lightshow.show.song.SongManager;
 import net.exenco.lightshow.show.stage.fixtures.*;
 import net.exenco.lightshow.util.*;
 import net.exenco.lightshow.util.ConfigHandler;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class StageManager {
 
     /* Fixture types */
-    private final HashMap<String, Class<? extends ShowFixture>> fixtureMap = new HashMap<>();
+    private final HashMap<String, FixtureFactory> fixtureMap = new HashMap<>();
+    /* assets of the current patch */
+    private volatile StageAssets assets;
 
     /* channel mapping */
     private final TreeMap<Integer, HashMap<Integer, ArrayList<ShowFixture>>> dmxMap = new TreeMap<>();
+    /* fixtures of the current patch by identity, unchanged ones are kept on reload */
+    private final HashMap<String, LoadedFixture> loadedFixtures = new HashMap<>();
+    /* compiled channel mapping, only accessed while updating fixtures */
+    private FixtureTable fixtureTable;
+    private FixtureDispatcher fixtureDispatcher;
 
     /* Art-Net */
     private final DmxBuffer dmxBuffer;
+    private final ArtNetPacket artNetPacket = new ArtNetPacket();
     private boolean receiving;
     private ArtNetReceiver artNetReceiver;
 
+    /* sACN */
+    private final SacnPacket sacnPacket = new SacnPacket();
+    private SacnReceiver sacnReceiver;
+
+    private final RenderLoop renderLoop;
+    private final MainThreadQueue mainThreadQueue;
+
     private final LightShow lightShow;
     private final ConfigHandler configHandler;
     private final ShowSettings showSettings;
@@ -41,75 +61,258 @@ public class StageManager {
         this.packetHandler = packetHandler;
 
         this.dmxBuffer = new DmxBuffer();
+        this.renderLoop = new RenderLoop(this);
+        this.mainThreadQueue = new MainThreadQueue(lightShow);
     }
 
+    /**
+     * @param configJson the fixture was created from.
+     * @param effectSettings the fixture was created with.
+     * @param fixture the fixture itself.
+     */
+    private record LoadedFixture(JsonObject configJson, ShowSettings.EffectSettings effectSettings, ShowFixture fixture) {
+        private boolean isUnchanged(JsonObject configJson, ShowSettings.EffectSettings effectSettings) {
+            return this.configJson.hashCode() == configJson.hashCode() && this.configJson.equals(configJson) && this.effectSettings.equals(effectSettings);
+        }
+    }
+
+    /**
+     * Loads the patch. On a reload the new patch is compared with the current one, fixtures are identified by universe,
+     * channel, type and their position among equal ones. Only fixtures whose config changed are created again, the others
+     * keep their state and entities. Receivers keep running and follow the patched universes, changes to their other
+     * settings apply on the next start.
+     */
     public void load() {
-        this.artNetReceiver = new ArtNetReceiver(this, showSettings);
+        if (artNetReceiver == null || !artNetReceiver.isRunning())
+            this.artNetReceiver = new ArtNetReceiver(this, showSettings);
+        if (sacnReceiver == null || !sacnReceiver.isRunning())
+            this.sacnReceiver = new SacnReceiver(this, showSettings);
 
-        dmxMap.clear();
-        for (ShowSettings.DmxEntry dmxEntry : showSettings.dmxEntryList()) {
-            int universeId = dmxEntry.universe();
-            JsonArray jsonArray = configHandler.getDmxEntriesJson(dmxEntry.filename());
+        boolean rendering = renderLoop.isRunning();
+        renderLoop.stop();
+        try {
+            loadPatch();
+        } finally {
+            if (rendering)
+                startRendering();
+        }
+    }
 
-            for (JsonElement jsonElement : jsonArray) {
-                JsonObject configJson = jsonElement.getAsJsonObject();
+    /**
+     * Builds the new patch and swaps it in once everything has been validated, so a faulty config keeps the current one.
+     */
+    private void loadPatch() {
+        TreeMap<Integer, HashMap<Integer, ArrayList<ShowFixture>>> dmxMap = new TreeMap<>();
+        HashMap<String, LoadedFixture> loadedFixtures = new HashMap<>();
+        List<ShowFixture> created = new ArrayList<>();
+        ShowSettings.EffectSettings effectSettings = showSettings.showEffects();
+        StageAssets assets;
+        DmxBuffer.Merge merge;
+        try {
+            assets = StageAssets.load(configHandler, showSettings.dmxEntryList());
 
-                int id = configJson.get("DmxId").getAsInt() - 1 + dmxEntry.offset();
-                int universe = universeId - 1;
+            for (ShowSettings.DmxEntry dmxEntry : showSettings.dmxEntryList()) {
+                int universeId = dmxEntry.universe();
+                JsonArray jsonArray = assets.dmxEntries().get(dmxEntry.filename());
 
-                if (id < 0 || universeId < 0) {
-                    throw new IllegalArgumentException("There is no such Dmx-Channel: " + universeId + "-" + id);
-                }
+                for (JsonElement jsonElement : jsonArray) {
+                    JsonObject configJson = jsonElement.getAsJsonObject();
 
-                if (!dmxMap.containsKey(universe)) {
-                    dmxMap.put(universe, new HashMap<>());
-                }
+                    int id = configJson.get("DmxId").getAsInt() - 1 + dmxEntry.offset();
+                    int universe = universeId - 1;
 
-                HashMap<Integer, ArrayList<ShowFixture>> subMap = dmxMap.get(universe);
-                String type = configJson.get("DmxType").getAsString();
+                    if (id < 0 || universeId < 1 || universeId > DmxBuffer.UNIVERSE_COUNT) {
+                        throw new IllegalArgumentException("There is no such Dmx-Channel: " + universeId + "-" + id);
+                    }
 
-                if (!fixtureMap.containsKey(type)) {
-                    lightShow.getLogger().warning("Given Dmx-Type " + type + " is not a valid type.");
-                }
+                    if (!dmxMap.containsKey(universe)) {
+                        dmxMap.put(universe, new HashMap<>());
+                    }
 
-                // Using reflections to dynamically create fixture object
-                try {
-                    Class<? extends ShowFixture> clazz = fixtureMap.get(type);
-                    if(clazz == null)
-                        continue;
+                    HashMap<Integer, ArrayList<ShowFixture>> subMap = dmxMap.get(universe);
+                    String type = configJson.get("DmxType").getAsString();
+
+                    if (!fixtureMap.containsKey(type)) {
+                        lightShow.getLogger().warning("Given Dmx-Type " + type + " is not a valid type.");
+                    }
 
+                    FixtureFactory factory = fixtureMap.get(type);
+                    if(factory == null)
+                        continue;
                     if(!subMap.containsKey(id))
                         subMap.put(id, new ArrayList<>());
-                    ShowFixture fixture = clazz.getDeclaredConstructor(JsonObject.class, StageManager.class).newInstance(configJson, this);
-                    subMap.get(id).add(fixture);
-                } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                    e.printStackTrace();
+
+                    String identity = universe + "-" + id + "-" + type;
+                    int occurrence = 0;
+                    while (loadedFixtures.containsKey(identity + "#" + occurrence))
+                        occurrence++;
+                    identity += "#" + occurrence;
+
+                    LoadedFixture loadedFixture = this.loadedFixtures.get(identity);
+                    if (loadedFixture == null || !loadedFixture.isUnchanged(configJson, effectSettings)) {
+                        ShowFixture fixture;
+                        try {
+                            fixture = factory.create(configJson, this);
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                            continue;
+                        }
+                        created.add(fixture);
+                        if (id + fixture.getDmxSize() > DmxBuffer.UNIVERSE_SIZE) {
+                            throw new IllegalArgumentException("Dmx-Type " + type + " at " + universeId + "-" + (id + 1) + " exceeds the universe by " + (id + fixture.getDmxSize() - DmxBuffer.UNIVERSE_SIZE) + " channels.");
+                        }
+                        loadedFixture = new LoadedFixture(configJson, effectSettings, fixture);
+                    }
+                    loadedFixtures.put(identity, loadedFixture);
+                    subMap.get(id).add(loadedFixture.fixture());
                 }
             }
+            merge = DmxBuffer.Merge.valueOf(showSettings.artNet().merge());
+        } catch (RuntimeException e) {
+            // Keep the current patch
+            created.forEach(ShowFixture::destroy);
+            throw e;
+        }
+
+        this.assets = assets;
+        songManager.setSongs(assets.songs());
+
+        // Remove fixtures which are no longer patched or have been replaced
+        for (Map.Entry<String, LoadedFixture> entry : this.loadedFixtures.entrySet())
+            if (loadedFixtures.get(entry.getKey()) != entry.getValue())
+                entry.getValue().fixture().destroy();
+        this.loadedFixtures.clear();
+        this.loadedFixtures.putAll(loadedFixtures);
+        this.dmxMap.clear();
+        this.dmxMap.putAll(dmxMap);
+
+        this.fixtureTable = new FixtureTable(dmxMap);
+        dmxBuffer.allocate(dmxMap.keySet());
+        artNetReceiver.updateUniverses();
+        sacnReceiver.updateUniverses();
+        dmxBuffer.setMerge(merge);
+        // Unchanged frames only wake the render loop through the refresh, it has to come before the loop parks
+        int refresh = showSettings.artNet().receiver().refresh();
+        int idleTimeout = showSettings.artNet().render().idleTimeout();
+        if (refresh > 0 && refresh >= idleTimeout) {
+            lightShow.getLogger().warning("ArtNet.Receiver.Refresh (" + refresh + ") must be less than ArtNet.Render.IdleTimeout (" + idleTimeout + "), using " + idleTimeout / 2 + " instead.");
+            refresh = idleTimeout / 2;
+        }
+        dmxBuffer.setRefresh(refresh);
+
+        // Spawns and destroys of the new patch are sent right away, even if no frame follows
+        packetHandler.flush();
+    }
+
+    /**
+     * Handles a received datagram. Only called from the receiving thread.
+     * @param message buffer whose remaining bytes contain the datagram.
+     * @param sourceId of the sender as returned by {@link DmxBuffer#getSourceId(java.net.InetAddress)}.
+     * @return whether the datagram was a valid Art-Net packet.
+     */
+    public boolean receiveArtNet(ByteBuffer message, int sourceId) {
+        if (!artNetPacket.wrap(message)) {
+            return false;
+        }
+        this.receiving = true;
+        boolean published;
+        if (artNetPacket.isSync()) {
+            published = dmxBuffer.sync(DmxBuffer.ART_SYNC);
+        } else if (artNetPacket.isDmx()) {
+            published = dmxBuffer.setDmxData(artNetPacket, sourceId);
+        } else {
+            return true;
         }
+        if (published)
+            renderLoop.signal();
+        return true;
     }
 
-    public void receiveArtNet(byte[] message) {
-        ArtNetPacket packet = ArtNetPacket.valueOf(message);
-        if (packet == null) {
-            return;
+    /**
+     * Handles a received E1.31 datagram. Only called from the sACN receiving thread.
+     * Synchronization packets commit the staged universes of their synchronization address.
+     * @param message buffer whose remaining bytes contain the datagram.
+     * @return whether the datagram was a valid E1.31 packet.
+     */
+    public boolean receiveSacn(ByteBuffer message) {
+        if (!sacnPacket.wrap(message)) {
+            return false;
         }
         this.receiving = true;
-        dmxBuffer.setDmxData(packet.getUniverseID(), packet.getDmx());
+        boolean published;
+        if (sacnPacket.isSync()) {
+            published = dmxBuffer.sync(sacnPacket.getSyncAddress());
+        } else if (sacnPacket.isTerminated()) {
+            published = dmxBuffer.removeSource(sacnPacket.getPortAddress(), sacnPacket.getSourceId());
+        } else if (!sacnPacket.isPreview() && sacnPacket.getStartCode() == 0) {
+            published = dmxBuffer.setDmxData(sacnPacket, sacnPacket.getSourceId());
+        } else {
+            return true;
+        }
+        if (published)
+            renderLoop.signal();
+        return true;
+    }
+
+    public void registerFixture(String key, FixtureFactory factory) {
+        fixtureMap.put(key, factory);
     }
 
+    /**
+     * Registers a fixture type by its class, which needs a public constructor taking the config and this manager.
+     * The constructor is looked up once, creating fixtures does not use reflection.
+     * @param key type name used as DmxType in the patch.
+     * @param clazz of the fixture.
+     */
     public void registerFixture(String key, Class<? extends ShowFixture> clazz) {
-        fixtureMap.put(key, clazz);
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup().findConstructor(clazz, MethodType.methodType(void.class, JsonObject.class, StageManager.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Dmx-Type " + key + " has no public constructor for a fixture.", e);
+        }
+        registerFixture(key, (configJson, stageManager) -> {
+            try {
+                return (ShowFixture) constructor.invoke(configJson, stageManager);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not create Dmx-Type " + key, e);
+            }
+        });
     }
 
     public boolean start() {
         if (artNetReceiver.isRunning()) {
             return false;
         }
-        return artNetReceiver.start();
+        if (!artNetReceiver.start()) {
+            return false;
+        }
+        // sACN is optional, Art-Net keeps running without it
+        if (showSettings.artNet().sacn().enabled() && !sacnReceiver.start())
+            lightShow.getLogger().warning("Continuing without sACN.");
+        ShowSettings.ArtNet.Render render = showSettings.artNet().render();
+        this.fixtureDispatcher = new FixtureDispatcher(render.threads());
+        mainThreadQueue.start(render.tickBudget());
+        startRendering();
+        return true;
+    }
+
+    private void startRendering() {
+        ShowSettings.ArtNet.Render render = showSettings.artNet().render();
+        renderLoop.start(render.rate(), render.idleTimeout());
     }
 
     public boolean stop() {
+        renderLoop.stop();
+        if (fixtureDispatcher != null) {
+            fixtureDispatcher.shutdown();
+        }
+        mainThreadQueue.stop();
+        if (sacnReceiver.isRunning()) {
+            sacnReceiver.stop();
+        }
         if (!artNetReceiver.isRunning()) {
             return false;
         }
@@ -132,19 +335,38 @@ public class StageManager {
     }
 
     public void updateFixtures() {
-        dmxMap.entrySet().parallelStream().forEach(entry ->  {
-            byte[] data = dmxBuffer.getDmxData(entry.getKey());
-            entry.getValue().entrySet().parallelStream().forEach(subEntry -> {
-                int id = subEntry.getKey();
-                subEntry.getValue().parallelStream().forEach(fixture -> {
-                    int size = fixture.getDmxSize();
-                    int[] dataArr = new int[size];
-                    for (int x = 0; x < size; x++)
-                        dataArr[x] = (data[id + x] & 0xFF);
-                    fixture.applyState(dataArr);
-                });
-            });
-        });
+        // Read all universes from the same ArtSync commit
+        int stamp;
+        do {
+            stamp = dmxBuffer.beginRead();
+            for (UniversePatch universe : fixtureTable.getUniverses()) {
+                universe.read = dmxBuffer.getDmxData(universe.portAddress, universe.data);
+            }
+        } while (!dmxBuffer.validateRead(stamp));
+
+        // Only fixtures whose channels changed or whose tick is due
+        int count = fixtureTable.collect();
+        if (count > 0) {
+            fixtureDispatcher.dispatch(fixtureTable, count);
+            packetHandler.flush();
+        }
+    }
+
+    /**
+     * @return packet statistics of every patched universe.
+     */
+    public List<DmxBuffer.Statistics> getStatistics() {
+        List<DmxBuffer.Statistics> statistics = new ArrayList<>();
+        for (int universe : dmxMap.keySet()) {
+            DmxBuffer.Statistics universeStatistics = dmxBuffer.getStatistics(universe);
+            if (universeStatistics != null)
+                statistics.add(universeStatistics);
+        }
+        return statistics;
+    }
+
+    public ArtNetReceiver getArtNetReceiver() {
+        return artNetReceiver;
     }
 
     public ShowSettings getShowSettings() {
@@ -159,10 +381,21 @@ public class StageManager {
         return songManager;
     }
 
+    /**
+     * @return assets read by the last load, shared by all fixtures.
+     */
+    public StageAssets getAssets() {
+        return assets;
+    }
+
     public PacketHandler getPacketHandler() {
         return packetHandler;
     }
 
+    public MainThreadQueue getMainThreadQueue() {
+        return mainThreadQueue;
+    }
+
     public LightShow getLightShow() {
         return lightShow;
     }
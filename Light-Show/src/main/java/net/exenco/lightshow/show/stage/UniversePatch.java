@@ -0,0 +1,92 @@
+package net.exenco.lightshow.show.stage;
+
+import net.exenco.lightshow.show.artnet.DmxBuffer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Frame and reverse index of a single universe within a {@link FixtureTable}.
+ * The reverse index maps each DMX slot to the fixtures covering it, so comparing a new frame with the previous one
+ * yields exactly the fixtures whose channels changed.
+ */
+final class UniversePatch {
+    final int portAddress;
+    /* Frame read from the buffer, all slices of the universe point into it */
+    final byte[] data;
+    int read;
+    private int version = -1;
+    private final byte[] previous = new byte[DmxBuffer.UNIVERSE_SIZE];
+
+    /* Table indices of the fixtures of this universe */
+    private final int from;
+    private final int to;
+
+    /* Fixtures covering slot i are slotFixtures[slotStart[i]] to slotFixtures[slotStart[i + 1] - 1] */
+    private final int[] slotStart = new int[DmxBuffer.UNIVERSE_SIZE + 1];
+    private final int[] slotFixtures;
+
+    /**
+     * @param portAddress of the universe.
+     * @param data frame the slices of the fixtures point into.
+     * @param fixtures of the whole table.
+     * @param from first table index of this universe.
+     * @param to table index after the last fixture of this universe.
+     */
+    UniversePatch(int portAddress, byte[] data, List<FixtureTable.PatchedFixture> fixtures, int from, int to) {
+        this.portAddress = portAddress;
+        this.data = data;
+        this.from = from;
+        this.to = to;
+
+        // Count fixtures per slot, then fill them in
+        for (int i = from; i < to; i++)
+            for (int slot = fixtures.get(i).offset(); slot < getEnd(fixtures.get(i)); slot++)
+                slotStart[slot + 1]++;
+        for (int slot = 0; slot < DmxBuffer.UNIVERSE_SIZE; slot++)
+            slotStart[slot + 1] += slotStart[slot];
+        this.slotFixtures = new int[slotStart[DmxBuffer.UNIVERSE_SIZE]];
+        int[] fill = Arrays.copyOf(slotStart, DmxBuffer.UNIVERSE_SIZE);
+        for (int i = from; i < to; i++)
+            for (int slot = fixtures.get(i).offset(); slot < getEnd(fixtures.get(i)); slot++)
+                slotFixtures[fill[slot]++] = i;
+    }
+
+    private static int getEnd(FixtureTable.PatchedFixture fixture) {
+        return fixture.offset() + fixture.slice().size();
+    }
+
+    /**
+     * Marks the fixtures which have to be applied for the frame just read.
+     * A new version without any changed slot is a keep-alive refresh, which applies all fixtures of the universe.
+     */
+    void collect(FixtureTable table) {
+        if (read == version)
+            return;
+        version = read;
+        if (!markChanges(table))
+            for (int i = from; i < to; i++)
+                table.mark(i);
+    }
+
+    /**
+     * Marks the fixtures of all slots which differ from the previous frame.
+     * @return whether any slot changed.
+     */
+    private boolean markChanges(FixtureTable table) {
+        boolean changed = false;
+        int from = 0;
+        while (from < DmxBuffer.UNIVERSE_SIZE) {
+            int mismatch = Arrays.mismatch(data, from, DmxBuffer.UNIVERSE_SIZE, previous, from, DmxBuffer.UNIVERSE_SIZE);
+            if (mismatch < 0)
+                break;
+            int slot = from + mismatch;
+            for (int i = slotStart[slot]; i < slotStart[slot + 1]; i++)
+                table.mark(slotFixtures[i]);
+            changed = true;
+            from = slot + 1;
+        }
+        System.arraycopy(data, 0, previous, 0, DmxBuffer.UNIVERSE_SIZE);
+        return changed;
+    }
+}
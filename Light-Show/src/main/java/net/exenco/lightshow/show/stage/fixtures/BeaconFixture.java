@@ -14,6 +14,7 @@ public class BeaconFixture extends ShowFixture {
 
     private final PacketHandler packetHandler;
     private boolean enabled;
+    private boolean altered;
     private int red;
     private int green;
     private int blue;
@@ -40,16 +41,26 @@ public class BeaconFixture extends ShowFixture {
     }
 
     @Override
-    public void applyState(int[] data) {
-        boolean enabled = data[0] > 0;
-        int red = data[1];
-        int green = data[2];
-        int blue = data[3];
+    public void destroy() {
+        if (!altered)
+            return;
+        packetHandler.restoreBlock(location);
+        for (Vector blockLocation : blockLocations)
+            packetHandler.restoreBlock(blockLocation);
+    }
+
+    @Override
+    public void applyState(DmxSlice data) {
+        boolean enabled = data.get(0) > 0;
+        int red = data.get(1);
+        int green = data.get(2);
+        int blue = data.get(3);
 
         boolean updateColours = false;
 
         if(enabled && !this.enabled) {
             this.enabled = true;
+            this.altered = true;
             updateColours = true;
             packetHandler.sendBlockChange(location, airData);
         } else if(!enabled && this.enabled) {
@@ -3,23 +3,18 @@ package net.exenco.lightshow.show.stage.fixtures;
 import com.google.gson.JsonObject;
 import net.exenco.lightshow.show.stage.StageManager;
 import net.exenco.lightshow.util.ConfigHandler;
-import net.exenco.lightshow.util.PacketHandler;
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.Levelled;
 import org.bukkit.block.data.Lightable;
-import org.bukkit.craftbukkit.CraftWorld;
 
 public class BlockChangerFixture extends ShowFixture {
     private final boolean lit;
     private final BlockData enabledState;
     private final BlockData disabledState;
 
-    private final PacketHandler packetHandler;
     public BlockChangerFixture(JsonObject jsonObject, StageManager stageManager) {
         super(jsonObject, stageManager);
-        this.packetHandler = stageManager.getPacketHandler();
 
         this.lit = !jsonObject.has("Lit") || jsonObject.get("Lit").getAsBoolean();
         Material enabledMaterial = jsonObject.has("EnabledState") ? ConfigHandler.getMaterialFromName(jsonObject.get("EnabledState").getAsString()) : Material.REDSTONE_LAMP;
@@ -33,10 +28,15 @@ public class BlockChangerFixture extends ShowFixture {
         return 1;
     }
 
+    @Override
+    public void destroy() {
+        restoreWorldBlock();
+    }
+
     private boolean lastState;
     @Override
-    public void applyState(int[] data) {
-        boolean enabled = data[0] > 0;
+    public void applyState(DmxSlice data) {
+        boolean enabled = data.get(0) > 0;
 
         if(lastState == enabled)
             return;
@@ -45,20 +45,16 @@ public class BlockChangerFixture extends ShowFixture {
         BlockData updateBlockData;
 
         if(enabled) {
-            updateBlockData = enabledState;
+            updateBlockData = enabledState.clone();
             if(lit && updateBlockData instanceof Lightable lightable)
                 lightable.setLit(true);
         } else {
-            updateBlockData = disabledState;
+            updateBlockData = disabledState.clone();
             if(lit && updateBlockData instanceof Lightable lightable)
                 lightable.setLit(false);
         }
         if(updateBlockData instanceof Levelled levelled)
-            levelled.setLevel(data[0] / 16);
-        Bukkit.getScheduler().runTask(stageManager.getLightShow(), () -> {
-            CraftWorld world = packetHandler.getLevel().getWorld();
-            world.setBlockData(location.toLocation(world), updateBlockData);
-            world.getBlockAt(location.toLocation(world)).getState().update(true, true);
-        });
+            levelled.setLevel(data.get(0) / 16);
+        setWorldBlock(updateBlockData);
     }
 }
@@ -31,10 +31,17 @@ public class BlockUpdaterFixture extends ShowFixture {
         return 1;
     }
 
+    @Override
+    public void destroy() {
+        if (altered)
+            packetHandler.restoreBlock(location);
+    }
+
     private boolean lastState;
+    private boolean altered;
     @Override
-    public void applyState(int[] data) {
-        boolean enabled = data[0] > 0;
+    public void applyState(DmxSlice data) {
+        boolean enabled = data.get(0) > 0;
 
         if(lastState == enabled)
             return;
@@ -52,7 +59,8 @@ public class BlockUpdaterFixture extends ShowFixture {
                 lightable.setLit(false);
         }
         if(updateBlockData instanceof Levelled levelled)
-            levelled.setLevel(data[0] / 16);
+            levelled.setLevel(data.get(0) / 16);
+        altered = true;
         packetHandler.sendBlockChange(location, updateBlockData);
     }
 }
@@ -2,7 +2,6 @@ package net.exenco.lightshow.show.stage.fixtures;
 
 import com.google.gson.JsonObject;
 import net.exenco.lightshow.show.stage.StageManager;
-import org.bukkit.Bukkit;
 
 public class CommandFixture extends ShowFixture {
 
@@ -20,15 +19,15 @@ public class CommandFixture extends ShowFixture {
     }
 
     @Override
-    public void applyState(int[] data) {
-        boolean execute = data[0] > 0;
+    public void applyState(DmxSlice data) {
+        boolean execute = data.get(0) > 0;
         if (!execute) {
             fire = true;
             return;
         }
 
         if (fire) {
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+            dispatchCommand(command);
             fire = false;
         }
     }
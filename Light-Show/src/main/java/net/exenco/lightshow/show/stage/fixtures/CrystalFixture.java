@@ -32,10 +32,16 @@ public class CrystalFixture extends ShowFixture {
     }
 
     @Override
-    public void applyState(int[] data) {
-        double distance = valueOfMax(this.maxDistance, data[0]);
-        float pan = 360 * -((float) (data[1]<<8 | data[2]) / 65535);
-        float tilt = 360 * -((float) (data[3]<<8 | data[4]) / 65535);
+    public void destroy() {
+        if (endCrystalApi.isSpawned())
+            endCrystalApi.destroy();
+    }
+
+    @Override
+    public void applyState(DmxSlice data) {
+        double distance = valueOfMax(this.maxDistance, data.get(0));
+        float pan = 360 * -((float) data.get16(1) / 65535);
+        float tilt = 360 * -((float) data.get16(3) / 65535);
 
         Vector destination = getDestination(pan, tilt, distance);
         endCrystalApi.setDestination(destination);
@@ -0,0 +1,72 @@
+package net.exenco.lightshow.show.stage.fixtures;
+
+import java.util.Objects;
+
+/**
+ * Read-only view on the channels of a single fixture within a universe frame.
+ * The view belongs to the frame and is reused for every update, so fixtures must not keep it beyond
+ * {@link ShowFixture#applyState(DmxSlice)}.
+ */
+public final class DmxSlice {
+    private byte[] frame;
+    private int offset;
+    private int size;
+
+    /**
+     * Points this view at a range of channels.
+     * @param frame containing the universe data.
+     * @param offset of the first channel within the frame.
+     * @param size number of channels.
+     * @return this view.
+     */
+    public DmxSlice wrap(byte[] frame, int offset, int size) {
+        Objects.checkFromIndexSize(offset, size, frame.length);
+        this.frame = frame;
+        this.offset = offset;
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * @return number of channels in this view.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param channel zero-based channel of the fixture.
+     * @return the unsigned 8-bit value of the channel.
+     */
+    public int get(int channel) {
+        return frame[offset + Objects.checkIndex(channel, size)] & 0xFF;
+    }
+
+    /**
+     * Reads a 16-bit value from a coarse channel followed by its fine channel.
+     * @param coarse zero-based channel holding the high byte.
+     * @return the unsigned 16-bit value.
+     */
+    public int get16(int coarse) {
+        return get(coarse) << 8 | get(coarse + 1);
+    }
+
+    /**
+     * Reads a 16-bit value from separate coarse and fine channels.
+     * @param coarse zero-based channel holding the high byte.
+     * @param fine zero-based channel holding the low byte.
+     * @return the unsigned 16-bit value.
+     */
+    public int get16(int coarse, int fine) {
+        return get(coarse) << 8 | get(fine);
+    }
+
+    /**
+     * Copies all channels as unsigned values.
+     * @param target to copy into, at least {@link #size()} long.
+     */
+    public void copyTo(int[] target) {
+        for (int i = 0; i < size; i++)
+            target[i] = frame[offset + i] & 0xFF;
+    }
+}
@@ -29,17 +29,22 @@ public class FogMachineFixture extends ShowFixture {
         this.direction = VectorUtils.getDirectionVector(-yaw, -pitch + 90).normalize();
     }
 
+    @Override
+    public boolean isPeriodic() {
+        return true;
+    }
+
     @Override
     public int getDmxSize() {
         return 4;
     }
 
     @Override
-    public void applyState(int[] data) {
-        double velocity = valueOfMax(maxVelocity, data[0]);
-        int particleId = data[1];
-        int count  = data[2];
-        double offset = valueOfMax(maxOffset, data[3]);
+    public void applyState(DmxSlice data) {
+        double velocity = valueOfMax(maxVelocity, data.get(0));
+        int particleId = data.get(1);
+        int count  = data.get(2);
+        double offset = valueOfMax(maxOffset, data.get(3));
 
         Particle particle = ParticleRegistry.getById(particleId);
         if(particle == null || particle.getDataType() != Void.class || velocity == 0.0)
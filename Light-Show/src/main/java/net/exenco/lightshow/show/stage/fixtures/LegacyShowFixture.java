@@ -0,0 +1,28 @@
+package net.exenco.lightshow.show.stage.fixtures;
+
+import com.google.gson.JsonObject;
+import net.exenco.lightshow.show.stage.StageManager;
+
+/**
+ * Base for fixtures reading their channels from an int[] instead of a {@link DmxSlice}, e.g. fixtures of other plugins
+ * written against the old API. The values are copied into an array reused between calls.
+ */
+public abstract class LegacyShowFixture extends ShowFixture {
+    private int[] data;
+    public LegacyShowFixture(JsonObject configJson, StageManager stageManager) {
+        super(configJson, stageManager);
+    }
+
+    @Override
+    public final void applyState(DmxSlice data) {
+        if (this.data == null)
+            this.data = new int[data.size()];
+        data.copyTo(this.data);
+        applyState(this.data);
+    }
+
+    /**
+     * @param data unsigned values of the channels of this fixture, the array is reused between calls.
+     */
+    public abstract void applyState(int[] data);
+}
@@ -28,6 +28,7 @@ public class MovingHeadFixture extends ShowFixture {
     private int state;
     private float yaw;
     private float pitch;
+    private boolean colourChanging;
 
     private ArmorStand headArmorStand = null;
     private ArmorStand lightArmorStand = null;
@@ -134,18 +135,34 @@ public class MovingHeadFixture extends ShowFixture {
         this.packetHandler.updateEntityEquipment(this.lightArmorStand);
     }
 
+    /**
+     * Only the colour change of a shining beam needs the tick.
+     */
+    @Override
+    public boolean isPeriodic() {
+        return colourChanging;
+    }
+
     @Override
     public int getDmxSize() {
         return 7;
     }
 
     @Override
-    public void applyState(int[] data) {
-        int dim = asRoundedPercentage(data[0]);
-        float pan = 360 * -((float) (data[1] << 8 | data[2]) / 65535);
-        float tilt = 360 * -((float) (data[3] << 8 | data[4]) / 65535);
-        double distance = valueOfMax(this.maxDistance, data[5]);
-        boolean colourChange = data[6] > 0;
+    public void destroy() {
+        if (guardianBeamApi.isSpawned())
+            guardianBeamApi.destroy();
+        packetHandler.destroyEntity(headArmorStand.getId());
+        packetHandler.destroyEntity(lightArmorStand.getId());
+    }
+
+    @Override
+    public void applyState(DmxSlice data) {
+        int dim = asRoundedPercentage(data.get(0));
+        float pan = 360 * -((float) data.get16(1) / 65535);
+        float tilt = 360 * -((float) data.get16(3) / 65535);
+        double distance = valueOfMax(this.maxDistance, data.get(5));
+        boolean colourChange = data.get(6) > 0;
 
         // Determine new state and update textures accordingly
         int newState = determineState(dim);
@@ -175,6 +192,7 @@ public class MovingHeadFixture extends ShowFixture {
         } else if (guardianBeamApi.isSpawned()) {
             guardianBeamApi.destroy();
         }
+        this.colourChanging = shouldActivateBeam && colourChange;
     }
 
     private int determineState(int dim) {
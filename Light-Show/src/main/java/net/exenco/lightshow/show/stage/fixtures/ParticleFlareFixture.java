@@ -26,21 +26,26 @@ public class ParticleFlareFixture extends ShowFixture {
         this.maxSize = jsonObject.has("MaxSize") ? jsonObject.get("MaxSize").getAsFloat() : 1;
     }
 
+    @Override
+    public boolean isPeriodic() {
+        return true;
+    }
+
     @Override
     public int getDmxSize() {
         return 8;
     }
 
     @Override
-    public void applyState(int[] data) {
-        int count = asRoundedPercentage(data[0]);
-        int particleId = data[1];
-        double offset = valueOf(data[2]);
-        double time = valueOfMax(maxTime, data[3]);
-        int red = data[4];
-        int green = data[5];
-        int blue = data[6];
-        float size = (float) valueOfMax(maxSize, data[7]);
+    public void applyState(DmxSlice data) {
+        int count = asRoundedPercentage(data.get(0));
+        int particleId = data.get(1);
+        double offset = valueOf(data.get(2));
+        double time = valueOfMax(maxTime, data.get(3));
+        int red = data.get(4);
+        int green = data.get(5);
+        int blue = data.get(6);
+        float size = (float) valueOfMax(maxSize, data.get(7));
 
         Particle particle = ParticleRegistry.getById(particleId);
         if(particle == null)
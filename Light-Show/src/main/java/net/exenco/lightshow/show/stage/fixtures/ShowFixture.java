@@ -3,12 +3,17 @@ package net.exenco.lightshow.show.stage.fixtures;
 import com.google.gson.JsonObject;
 import net.exenco.lightshow.show.stage.StageManager;
 import net.exenco.lightshow.util.ConfigHandler;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.util.Vector;
 
 public abstract class ShowFixture {
     protected final Vector location;
     protected final StageManager stageManager;
     protected long tickSize;
+    private boolean worldBlockChanged;
+    /* Actual block before the first change by this fixture, read on the main thread */
+    private volatile BlockData originalBlock;
     public ShowFixture(JsonObject configJson, StageManager stageManager) {
         this.stageManager = stageManager;
         this.location = configJson.has("Location") ? ConfigHandler.translateVector(configJson.getAsJsonObject("Location")) : new Vector(0, 0, 0);
@@ -17,7 +22,62 @@ public abstract class ShowFixture {
 
     public abstract int getDmxSize();
 
-    public abstract void applyState(int[] data);
+    /**
+     * Applies the channels of the current frame to the fixture.
+     * @param data view on the channels of this fixture, only valid during the call.
+     */
+    public abstract void applyState(DmxSlice data);
+
+    /**
+     * Periodic fixtures are applied whenever their tick is due even if their data did not change, e.g. to spawn particles.
+     * All other fixtures are only applied when their data changes. Checked every frame, so it may depend on the state
+     * of the fixture.
+     * @return whether the fixture currently opts into being applied on its tick.
+     */
+    public boolean isPeriodic() {
+        return false;
+    }
+
+    /**
+     * Sets the actual block at the location of this fixture. Fixtures are applied off the main thread, so the change is
+     * queued and applied on the next tick.
+     * @param blockData to set, must not be modified afterwards.
+     */
+    protected void setWorldBlock(BlockData blockData) {
+        World world = stageManager.getPacketHandler().getLevel().getWorld();
+        if (!worldBlockChanged) {
+            worldBlockChanged = true;
+            // Operations are applied before block changes, so this reads the block before the first change
+            stageManager.getMainThreadQueue().submit(() -> originalBlock = world.getBlockAt(location.getBlockX(), location.getBlockY(), location.getBlockZ()).getBlockData());
+        }
+        stageManager.getMainThreadQueue().setBlockData(world, location.getBlockX(), location.getBlockY(), location.getBlockZ(), blockData);
+    }
+
+    /**
+     * Sets the actual block at the location of this fixture back to what it was before the first
+     * {@link #setWorldBlock(BlockData)}, if it was changed at all.
+     */
+    protected void restoreWorldBlock() {
+        BlockData originalBlock = this.originalBlock;
+        if (originalBlock == null)
+            return;
+        World world = stageManager.getPacketHandler().getLevel().getWorld();
+        stageManager.getMainThreadQueue().setBlockData(world, location.getBlockX(), location.getBlockY(), location.getBlockZ(), originalBlock);
+    }
+
+    /**
+     * Dispatches a command as console on the next tick.
+     * @param command to dispatch, without leading slash.
+     */
+    protected void dispatchCommand(String command) {
+        stageManager.getMainThreadQueue().dispatchCommand(command);
+    }
+
+    /**
+     * Called when the fixture is removed from the patch by a reload. Destroys everything the fixture has spawned.
+     */
+    public void destroy() {
+    }
 
     protected double valueOf(int data) {
         return (double) data / 255;
@@ -28,7 +88,18 @@ public abstract class ShowFixture {
     protected int asRoundedPercentage(int data) {
         return Math.round(100.0F * ((float) data / 255));
     }
+    public long getTickSize() {
+        return tickSize;
+    }
+
     private long millis = 0;
+    /**
+     * @return whether {@link #isTick()} would currently return true, without consuming the tick.
+     */
+    public boolean isTickDue() {
+        return millis + tickSize < System.currentTimeMillis();
+    }
+
     protected boolean isTick() {
         long current = System.currentTimeMillis();
         boolean value = millis + tickSize < current;
@@ -20,8 +20,8 @@ public class SongSelectorFixture extends ShowFixture {
     }
 
     @Override
-    public void applyState(int[] data) {
-        int id = Math.round((float) valueOfMax(range, data[0]));
+    public void applyState(DmxSlice data) {
+        int id = Math.round((float) valueOfMax(range, data.get(0)));
         if(id == 0) {
             songManager.stop();
         } else {
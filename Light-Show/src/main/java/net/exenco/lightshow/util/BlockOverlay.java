@@ -0,0 +1,137 @@
+package net.exenco.lightshow.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Block states by position, grouped by chunk section. Positions are stored packed, section by section, so every section
+ * is sent as a single packet. Not thread-safe.
+ */
+final class BlockOverlay {
+    /* Section-relative positions and their states by packed section position */
+    private final Long2ObjectMap<Short2ObjectMap<BlockState>> sections = new Long2ObjectLinkedOpenHashMap<>();
+    /* Kept until the overlay changes, so sending it to many players builds the packets only once */
+    private List<Packet<?>> packets;
+
+    /**
+     * @param blockPos packed as in {@link BlockPos#asLong()}.
+     * @param blockState to show, replacing an earlier one at the same position.
+     * @return whether the position was not part of the overlay before.
+     */
+    boolean put(long blockPos, BlockState blockState) {
+        Short2ObjectMap<BlockState> section = sections.computeIfAbsent(getSectionKey(blockPos), key -> new Short2ObjectOpenHashMap<>());
+        BlockState previous = section.put(getRelativePosition(blockPos), blockState);
+        if (previous != blockState)
+            packets = null;
+        return previous == null;
+    }
+
+    /**
+     * @param blockPos packed as in {@link BlockPos#asLong()}.
+     * @return the state removed, or null if the position was not part of the overlay.
+     */
+    BlockState remove(long blockPos) {
+        long sectionKey = getSectionKey(blockPos);
+        Short2ObjectMap<BlockState> section = sections.get(sectionKey);
+        if (section == null)
+            return null;
+        BlockState blockState = section.remove(getRelativePosition(blockPos));
+        if (blockState == null)
+            return null;
+        if (section.isEmpty())
+            sections.remove(sectionKey);
+        packets = null;
+        return blockState;
+    }
+
+    boolean contains(long blockPos) {
+        Short2ObjectMap<BlockState> section = sections.get(getSectionKey(blockPos));
+        return section != null && section.containsKey(getRelativePosition(blockPos));
+    }
+
+    boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    void clear() {
+        sections.clear();
+        packets = null;
+    }
+
+    /**
+     * @return all positions of the overlay, packed as in {@link BlockPos#asLong()}.
+     */
+    long[] getPositions() {
+        int size = 0;
+        for (Short2ObjectMap<BlockState> section : sections.values())
+            size += section.size();
+        long[] positions = new long[size];
+        int i = 0;
+        for (Long2ObjectMap.Entry<Short2ObjectMap<BlockState>> entry : sections.long2ObjectEntrySet()) {
+            SectionPos sectionPos = SectionPos.of(entry.getLongKey());
+            for (short position : entry.getValue().keySet())
+                positions[i++] = sectionPos.relativeToBlockPos(position).asLong();
+        }
+        return positions;
+    }
+
+    /**
+     * @return one packet per section showing all states of the overlay.
+     */
+    List<Packet<?>> getPackets() {
+        if (packets != null)
+            return packets;
+        List<Packet<?>> packetList = new ArrayList<>(sections.size());
+        for (Long2ObjectMap.Entry<Short2ObjectMap<BlockState>> entry : sections.long2ObjectEntrySet())
+            packetList.add(getSectionPacket(SectionPos.of(entry.getLongKey()), entry.getValue()));
+        this.packets = packetList;
+        return packetList;
+    }
+
+    /**
+     * Reads the actual state at a position, only if its chunk is loaded. Must be called on the main thread.
+     * @param level to read the state from.
+     * @param blockPos packed as in {@link BlockPos#asLong()}.
+     * @return the actual state, or null if the chunk is not loaded.
+     */
+    static BlockState getLoadedBlockState(ServerLevel level, long blockPos) {
+        LevelChunk chunk = level.getChunkSource().getChunkNow(BlockPos.getX(blockPos) >> 4, BlockPos.getZ(blockPos) >> 4);
+        if (chunk == null)
+            return null;
+        return chunk.getBlockState(BlockPos.of(blockPos));
+    }
+
+    private static long getSectionKey(long blockPos) {
+        return SectionPos.asLong(BlockPos.getX(blockPos) >> 4, BlockPos.getY(blockPos) >> 4, BlockPos.getZ(blockPos) >> 4);
+    }
+
+    private static short getRelativePosition(long blockPos) {
+        return (short) ((BlockPos.getX(blockPos) & 15) << 8 | (BlockPos.getZ(blockPos) & 15) << 4 | BlockPos.getY(blockPos) & 15);
+    }
+
+    /**
+     * Creates a {@link ClientboundSectionBlocksUpdatePacket}, or a {@link ClientboundBlockUpdatePacket} for a single
+     * block.
+     */
+    private static Packet<?> getSectionPacket(SectionPos sectionPos, Short2ObjectMap<BlockState> blockChanges) {
+        if (blockChanges.size() == 1) {
+            Short2ObjectMap.Entry<BlockState> blockChange = blockChanges.short2ObjectEntrySet().iterator().next();
+            return new ClientboundBlockUpdatePacket(sectionPos.relativeToBlockPos(blockChange.getShortKey()), blockChange.getValue());
+        }
+        // The packet keeps the map, so it gets its own copy
+        return new ClientboundSectionBlocksUpdatePacket(sectionPos, new Short2ObjectOpenHashMap<>(blockChanges));
+    }
+}
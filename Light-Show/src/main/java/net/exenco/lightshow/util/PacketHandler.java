@@ -1,48 +1,81 @@
 package net.exenco.lightshow.util;
 
 import com.mojang.datafixers.util.Pair;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 import net.exenco.lightshow.LightShow;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.core.particles.ParticleOptions;
+import net.minecraft.network.Connection;
+import net.minecraft.network.ConnectionProtocol;
 import net.minecraft.network.PacketListener;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.game.*;
 import net.minecraft.network.syncher.SynchedEntityData;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+import net.minecraft.sounds.SoundEvent;
+import net.minecraft.sounds.SoundSource;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.projectile.FireworkRocketEntity;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.scores.PlayerTeam;
-import org.bukkit.Location;
+import org.bukkit.Bukkit;
 import org.bukkit.Particle;
 import org.bukkit.SoundCategory;
 import org.bukkit.block.data.BlockData;
+import org.bukkit.craftbukkit.CraftParticle;
 import org.bukkit.craftbukkit.CraftWorld;
+import org.bukkit.craftbukkit.block.data.CraftBlockData;
 import org.bukkit.craftbukkit.entity.CraftPlayer;
-import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Manager for cases when the plugins need to modify client behaviour for specific players.
+ * Callers only emit intents into a lock-free outbox, packets are built from a snapshot of the caller's state. A single
+ * sender thread drains the outbox whenever {@link #flush()} is called, keeps only the last update per entity and block,
+ * and owns everything sent so far as well as the list of participating players.
+ * Players further away from an entity receive its updates at a lower rate, and fewer particles.
+ * Each player receives everything of a frame as a single bundle, which the client applies at once. Packets sent to more
+ * than one player are encoded only once per frame.
  */
-public class PacketHandler {
+public class PacketHandler implements Runnable {
+    private final Queue<Intent> outbox = new ConcurrentLinkedQueue<>();
+    private final Thread sender;
+    private volatile boolean running = true;
+
     private final LightShow lightShow;
-    private final ProximitySensor proximitySensor;
+    private final ShowSettings showSettings;
     private final Level level;
-    public PacketHandler(LightShow lightShow, ProximitySensor proximitySensor, ShowSettings showSettings) {
+    public PacketHandler(LightShow lightShow, ShowSettings showSettings) {
         this.lightShow = lightShow;
-        this.proximitySensor = proximitySensor;
+        this.showSettings = showSettings;
 
         this.level = ((CraftWorld) Objects.requireNonNull(showSettings.stage().location().getWorld())).getHandle();
-    }
+        this.sharedPacketEncoder = new SharedPacketEncoder(level.registryAccess());
 
-    private void sendPacketToAllPlayers(Packet<? extends PacketListener> packet) {
-        for (CraftPlayer player : proximitySensor.getPlayerList()) {
-            player.getHandle().connection.send(packet);
-        }
+        this.sender = new Thread(this, "Light-Show Sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+        this.blockReader = Bukkit.getScheduler().runTaskTimer(lightShow, this::readActualBlocks, 1, 1);
     }
 
     /**
@@ -53,82 +86,667 @@ public class PacketHandler {
         return level;
     }
 
+    /* ----------------------- OUTBOX ----------------------- */
+
+    private sealed interface Intent {}
+    private record SpawnEntity(int id, double x, double y, double z, Packet<?> add, List<SynchedEntityData.DataValue<?>> metadata, Packet<?> equipment) implements Intent {}
+    private record UpdateMetadata(int id, double x, double y, double z, List<SynchedEntityData.DataValue<?>> values) implements Intent {}
+    private record UpdateEntity(int id, double x, double y, double z, int kind, Packet<?> packet) implements Intent {}
+    private record DestroyEntity(int id) implements Intent {}
+    private record BlockChange(long blockPos, BlockState blockState) implements Intent {}
+    private record RestoreBlock(long blockPos) implements Intent {}
+    private record ActualBlocks(long[] blockPositions, BlockState[] blockStates) implements Intent {}
+    private record CreateTeam(PlayerTeam scoreboardTeam) implements Intent {}
+    private record Broadcast(Packet<?> packet) implements Intent {}
+    private record SpawnParticle(ParticleOptions particle, double x, double y, double z, int count, float offsetX, float offsetY, float offsetZ, float time) implements Intent {}
+    private record Join(CraftPlayer player) implements Intent {}
+    private record Leave(CraftPlayer player) implements Intent {}
+    private record Reset() implements Intent {}
+
+    private static final int METADATA = 0;
+    private static final int EQUIPMENT = 1;
+    private static final int MOVE = 2;
+    /* The viewer missed updates, only the full metadata snapshot and a teleport bring it up to date */
+    private static final int SNAPSHOT = 3;
+
+    /* Relative moves are encoded in 1/4096 of a block and limited to a short */
+    private static final double MOVE_SCALE = 4096;
+    /* Moves below this, in 1/4096 of a block, are not visible and not sent */
+    private static final long MIN_MOVE = 128;
+    /* Every this many moves of an entity a teleport corrects rounding errors */
+    private static final int RESYNC_INTERVAL = 100;
+
+    /**
+     * Sends everything emitted so far. Called by the render loop at the end of every frame.
+     */
+    public void flush() {
+        LockSupport.unpark(sender);
+    }
+
+    private void submit(Intent intent) {
+        outbox.add(intent);
+    }
+
+    /**
+     * Sends everything still emitted and stops the sender thread.
+     */
+    public void stop() {
+        blockReader.cancel();
+        running = false;
+        LockSupport.unpark(sender);
+        try {
+            sender.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            // Updates held back for distant viewers are sent on later frames, even if nothing else is emitted
+            if (hasStale())
+                LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1) / Math.max(1, showSettings.artNet().render().rate()));
+            else
+                LockSupport.park(this);
+            drain();
+        }
+        drain();
+    }
+
+    private boolean hasStale() {
+        for (Viewer viewer : viewerList)
+            if (!viewer.stale.isEmpty())
+                return true;
+        return false;
+    }
+
+    private void drain() {
+        frame++;
+        Intent intent;
+        while ((intent = outbox.poll()) != null) {
+            try {
+                handle(intent);
+            } catch (RuntimeException e) {
+                lightShow.getLogger().log(java.util.logging.Level.WARNING, "Could not send " + intent.getClass().getSimpleName() + "!", e);
+            }
+        }
+        try {
+            sendPending();
+        } catch (RuntimeException e) {
+            lightShow.getLogger().log(java.util.logging.Level.WARNING, "Could not send pending updates!", e);
+        }
+        if (alteredPositionsChanged) {
+            alteredPositionsChanged = false;
+            alteredPositions = alteredBlocks.getPositions();
+        }
+        for (Viewer viewer : viewerList)
+            viewer.flush();
+        // Every channel holds its own reference until written
+        encodedPackets.values().forEach(ByteBuf::release);
+        encodedPackets.clear();
+        packetUses.clear();
+    }
+
+    private void handle(Intent intent) {
+        switch (intent) {
+            case SpawnEntity spawn -> {
+                entityMap.put(spawn.id(), new EntityState(spawn));
+                pendingEntities.computeIfAbsent(spawn.id(), PendingEntity::new).spawn();
+            }
+            case UpdateEntity update -> {
+                EntityState state = entityMap.get(update.id());
+                if (state == null)
+                    return;
+                state.packets[update.kind()] = update.packet();
+                state.x = update.x();
+                state.y = update.y();
+                state.z = update.z();
+                pendingEntities.computeIfAbsent(update.id(), PendingEntity::new).update(update.kind());
+            }
+            case UpdateMetadata update -> {
+                EntityState state = entityMap.get(update.id());
+                if (state == null)
+                    return;
+                state.updateMetadata(update.values());
+                state.x = update.x();
+                state.y = update.y();
+                state.z = update.z();
+                pendingEntities.computeIfAbsent(update.id(), PendingEntity::new).update(METADATA);
+            }
+            case DestroyEntity destroy -> {
+                entityMap.remove(destroy.id());
+                PendingEntity pending = pendingEntities.get(destroy.id());
+                if (pending != null && pending.spawned)
+                    pendingEntities.remove(destroy.id()); // Never sent, nothing to destroy
+                else
+                    pendingEntities.computeIfAbsent(destroy.id(), PendingEntity::new).destroy();
+            }
+            case BlockChange blockChange -> {
+                alteredPositionsChanged |= alteredBlocks.put(blockChange.blockPos(), blockChange.blockState());
+                pendingBlocks.put(blockChange.blockPos(), blockChange.blockState());
+            }
+            case RestoreBlock restoreBlock -> {
+                pendingBlocks.remove(restoreBlock.blockPos());
+                if (alteredBlocks.remove(restoreBlock.blockPos()) == null)
+                    return;
+                alteredPositionsChanged = true;
+                BlockState actual = actualBlocks.remove(restoreBlock.blockPos());
+                if (actual != null)
+                    sendPacketToAllPlayers(new ClientboundBlockUpdatePacket(BlockPos.of(restoreBlock.blockPos()), actual));
+            }
+            case ActualBlocks actual -> {
+                for (int i = 0; i < actual.blockPositions().length; i++)
+                    if (alteredBlocks.contains(actual.blockPositions()[i]))
+                        actualBlocks.put(actual.blockPositions()[i], actual.blockStates()[i]);
+            }
+            case CreateTeam createTeam -> {
+                scoreboardTeamList.add(createTeam.scoreboardTeam());
+                sendPacketToAllPlayers(getTeamCreationPacket(createTeam.scoreboardTeam()));
+            }
+            case Broadcast broadcast -> sendPacketToAllPlayers(broadcast.packet());
+            case SpawnParticle particle -> spawnParticle(particle);
+            // Players always receive a consistent state, so pending updates go out first
+            case Join join -> {
+                sendPending();
+                if (getViewer(join.player()) != null)
+                    return;
+                Viewer viewer = new Viewer(join.player());
+                viewerList.add(viewer);
+                setPlayerBlocks(viewer);
+                setPlayerEntities(viewer);
+                setPlayerTeams(viewer);
+            }
+            case Leave leave -> {
+                sendPending();
+                Viewer viewer = getViewer(leave.player());
+                if (viewer == null)
+                    return;
+                viewerList.remove(viewer);
+                resetPlayerBlocks(viewer);
+                resetPlayerEntities(viewer);
+                viewer.flush();
+            }
+            case Reset reset -> {
+                sendPending();
+                for (Viewer viewer : viewerList) {
+                    resetPlayerBlocks(viewer);
+                    resetPlayerEntities(viewer);
+                    viewer.flush();
+                }
+                viewerList.clear();
+                alteredBlocks.clear();
+                actualBlocks.clear();
+                alteredPositionsChanged = true;
+                entityMap.clear();
+                scoreboardTeamList.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends the last update of every entity and block changed since the last flush.
+     * Spawns, destroys and blocks are sent to everyone, entity updates only to viewers whose level of detail is due.
+     */
+    private void sendPending() {
+        ShowSettings.Stage.LevelOfDetail levelOfDetail = showSettings.stage().levelOfDetail();
+        for (Viewer viewer : viewerList)
+            viewer.locate();
+
+        for (PendingEntity pending : pendingEntities.values()) {
+            if (pending.destroyed) {
+                sendPacketToAllPlayers(getEntityDestroyPacket(pending.id));
+                for (Viewer viewer : viewerList)
+                    viewer.stale.remove(pending.id);
+            } else if (pending.spawned) {
+                EntityState state = entityMap.get(pending.id);
+                if (state == null)
+                    continue;
+                state.dirtyMetadata.clear();
+                for (Viewer viewer : viewerList) {
+                    state.sendTo(viewer);
+                    viewer.stale.remove(pending.id);
+                }
+            } else {
+                EntityState state = entityMap.get(pending.id);
+                if (state != null) {
+                    state.packDirtyMetadata();
+                    if ((pending.kinds & 1 << MOVE) != 0)
+                        state.packMove();
+                }
+                for (Viewer viewer : viewerList)
+                    viewer.stale.merge(pending.id, pending.kinds, (a, b) -> a | b);
+            }
+        }
+
+        // Entities skipped before are sent with their latest state once due, so every viewer ends up consistent
+        for (Viewer viewer : viewerList) {
+            Iterator<Map.Entry<Integer, Integer>> iterator = viewer.stale.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Integer> entry = iterator.next();
+                EntityState state = entityMap.get(entry.getKey());
+                if (state == null) {
+                    iterator.remove();
+                } else if (isDue(levelOfDetail, viewer.distanceSquared(state.x, state.y, state.z), entry.getKey())) {
+                    state.sendTo(viewer, entry.getValue());
+                    iterator.remove();
+                } else {
+                    entry.setValue(entry.getValue() | 1 << SNAPSHOT);
+                }
+            }
+        }
+        for (PendingEntity pending : pendingEntities.values()) {
+            EntityState state = entityMap.get(pending.id);
+            if (state != null) {
+                state.dirtyMetadataPacket = null;
+                state.movePacket = null;
+            }
+        }
+        pendingEntities.clear();
+
+        pendingBlocks.getPackets().forEach(this::sendPacketToAllPlayers);
+        pendingBlocks.clear();
+    }
+
+    /* ----------------------- PLAYERS ----------------------- */
+
+    /* Owned by the sender thread */
+    private final List<Viewer> viewerList = new ArrayList<>();
+    private long frame;
+
+    /* Most packets the client accepts within a single bundle */
+    private static final int MAX_BUNDLE_SIZE = 4096;
+
+    private final SharedPacketEncoder sharedPacketEncoder;
+    /* Number of viewers each packet of this frame is queued for */
+    private final Map<Packet<?>, Integer> packetUses = new IdentityHashMap<>();
+    /* Packets of this frame encoded for more than one viewer */
+    private final Map<Packet<?>, ByteBuf> encodedPackets = new IdentityHashMap<>();
+
+    /**
+     * @param packet queued for a viewer this frame.
+     * @return the packet encoded once for all viewers, or the packet itself if it is only sent to a single viewer or
+     * cannot be shared.
+     */
+    private Object share(Packet<?> packet) {
+        if (packetUses.getOrDefault(packet, 0) < 2)
+            return packet;
+        ByteBuf buffer = encodedPackets.get(packet);
+        if (buffer == null && !encodedPackets.containsKey(packet)) {
+            buffer = sharedPacketEncoder.encode(packet);
+            encodedPackets.put(packet, buffer);
+        }
+        return buffer != null ? buffer : packet;
+    }
+
+    /**
+     * A participating player, the packets collected for them this frame and the entity updates they skipped because of
+     * their distance.
+     */
+    private final class Viewer {
+        private final CraftPlayer player;
+        /* Packets, replaced by their shared encoding when flushed */
+        private final List<Object> outgoing = new ArrayList<>();
+        /* Kinds of updates not sent yet by entity id */
+        private final Map<Integer, Integer> stale = new HashMap<>();
+        private double x;
+        private double y;
+        private double z;
+
+        private Viewer(CraftPlayer player) {
+            this.player = player;
+        }
+
+        private void send(Packet<?> packet) {
+            outgoing.add(packet);
+            if (viewerList.size() > 1 && !(packet instanceof ClientboundBundlePacket))
+                packetUses.merge(packet, 1, Integer::sum);
+        }
+
+        /**
+         * Sends the collected packets, more than one as bundle so the connection is flushed only once.
+         */
+        @SuppressWarnings("unchecked")
+        private void flush() {
+            if (outgoing.isEmpty())
+                return;
+            ServerGamePacketListenerImpl connection = player.getHandle().connection;
+            boolean encoded = false;
+            if (isPlaying(connection)) {
+                for (int i = 0; i < outgoing.size(); i++) {
+                    Object message = share((Packet<?>) outgoing.get(i));
+                    encoded |= message instanceof ByteBuf;
+                    outgoing.set(i, message);
+                }
+            }
+            if (encoded) {
+                // Shared encodings bypass the encoder of the connection, the bundle is delimited by hand
+                Channel channel = connection.connection.channel;
+                for (int from = 0; from < outgoing.size(); from += MAX_BUNDLE_SIZE) {
+                    int to = Math.min(outgoing.size(), from + MAX_BUNDLE_SIZE);
+                    if (to - from > 1)
+                        channel.write(new ClientboundBundleDelimiterPacket());
+                    for (Object message : outgoing.subList(from, to))
+                        channel.write(message instanceof ByteBuf buffer ? buffer.retainedDuplicate() : message);
+                    if (to - from > 1)
+                        channel.write(new ClientboundBundleDelimiterPacket());
+                }
+                channel.flush();
+            } else if (outgoing.size() == 1) {
+                connection.send((Packet<?>) outgoing.get(0));
+            } else {
+                // The bundle is encoded later on the network thread, so it gets its own copy
+                for (int from = 0; from < outgoing.size(); from += MAX_BUNDLE_SIZE) {
+                    List<Packet<? super ClientGamePacketListener>> packets = new ArrayList<>();
+                    for (Object message : outgoing.subList(from, Math.min(outgoing.size(), from + MAX_BUNDLE_SIZE)))
+                        packets.add((Packet<? super ClientGamePacketListener>) message);
+                    connection.send(new ClientboundBundlePacket(packets));
+                }
+            }
+            outgoing.clear();
+        }
+
+        /**
+         * Shared encodings are written to the channel directly, which skips the checks of {@link Connection#send}. They
+         * are only valid while the connection is open and in the game protocol they were encoded for.
+         */
+        private static boolean isPlaying(ServerGamePacketListenerImpl connection) {
+            Connection network = connection.connection;
+            return network.isConnected() && network.getPacketListener() == connection && connection.protocol() == ConnectionProtocol.PLAY;
+        }
+
+        private void locate() {
+            net.minecraft.world.entity.player.Player handle = player.getHandle();
+            this.x = handle.getX();
+            this.y = handle.getY();
+            this.z = handle.getZ();
+        }
+
+        private double distanceSquared(double x, double y, double z) {
+            return (this.x - x) * (this.x - x) + (this.y - y) * (this.y - y) + (this.z - z) * (this.z - z);
+        }
+    }
+
+    private Viewer getViewer(CraftPlayer player) {
+        for (Viewer viewer : viewerList)
+            if (viewer.player.equals(player))
+                return viewer;
+        return null;
+    }
+
+    /**
+     * Whether an entity update is sent to a viewer this frame. Near entities are updated every frame, mid-range and far
+     * ones only every few frames, staggered by id so not all of them are sent in the same frame.
+     */
+    private boolean isDue(ShowSettings.Stage.LevelOfDetail levelOfDetail, double distanceSquared, int id) {
+        int interval;
+        if (distanceSquared <= levelOfDetail.near() * levelOfDetail.near())
+            return true;
+        else if (distanceSquared <= levelOfDetail.far() * levelOfDetail.far())
+            interval = levelOfDetail.midInterval();
+        else
+            interval = levelOfDetail.farInterval();
+        return interval <= 1 || Math.floorMod(frame + id, interval) == 0;
+    }
+
+    private void sendPacketToAllPlayers(Packet<? extends PacketListener> packet) {
+        for (Viewer viewer : viewerList) {
+            viewer.send(packet);
+        }
+    }
+
     /* ----------------------- SET ----------------------- */
 
     /**
-     * Sets everything altered in stage world for given player.
+     * Sets everything altered in stage world for given player and adds them to the participating players.
      * @param craftPlayer that receives changes.
      */
     public void set(CraftPlayer craftPlayer) {
-        setPlayerBlocks(craftPlayer);
-        setPlayerEntities(craftPlayer);
-        setPlayerTeams(craftPlayer);
+        submit(new Join(craftPlayer));
+        flush();
     }
 
     /* ----------------------- RESET ----------------------- */
 
     /**
-     * Resets everything altered in stage world for given player
+     * Resets everything altered in stage world for given player and removes them from the participating players.
      * @param craftPlayer that receives changes.
      */
     public void reset(CraftPlayer craftPlayer) {
-        resetPlayerBlocks(craftPlayer);
-        resetPlayerEntities(craftPlayer);
+        submit(new Leave(craftPlayer));
+        flush();
     }
 
     /**
      * Resets everything for every participating player.
      */
     public void resetEverything() {
-        proximitySensor.getPlayerList().forEach(this::reset);
-
-        alteredBlocksMap.clear();
-        entityMap.clear();
-        scoreboardTeamList.clear();
+        submit(new Reset());
+        flush();
     }
 
 
     /* ----------------------- BLOCK CHANGE ----------------------- */
 
-    private final Map<Location, BlockData> alteredBlocksMap = new HashMap<>();
+    /* Owned by the sender thread */
+    private final BlockOverlay alteredBlocks = new BlockOverlay();
+    private final BlockOverlay pendingBlocks = new BlockOverlay();
+    /* Actual states of the altered blocks, as last read on the main thread */
+    private final BlockOverlay actualBlocks = new BlockOverlay();
+    private boolean alteredPositionsChanged;
+    /* Positions of the altered blocks, published by the sender thread whenever they change */
+    private volatile long[] alteredPositions = new long[0];
+
+    /* Owned by the main thread */
+    private final BukkitTask blockReader;
+    private final Long2ObjectMap<BlockState> readBlocks = new Long2ObjectOpenHashMap<>();
+    private long[] readPositions = alteredPositions;
 
     /**
-     * Sets all altered blocks for given player.
-     * @param player that receives changes.
+     * Reads the actual states of all altered blocks on the main thread every tick and hands those which changed to the
+     * sender thread, so players can be restored without the sender reading the world. All states are handed over again
+     * whenever the altered positions change, as the sender forgets the states of positions no longer altered.
      */
-    private void setPlayerBlocks(Player player) {
-        for(Map.Entry<Location, BlockData> entry : alteredBlocksMap.entrySet()) {
-            player.sendBlockChange(entry.getKey(), entry.getValue());
+    private void readActualBlocks() {
+        long[] positions = alteredPositions;
+        if (positions != readPositions) {
+            readPositions = positions;
+            readBlocks.clear();
+        }
+        LongList changedPositions = new LongArrayList();
+        List<BlockState> changedStates = new ArrayList<>();
+        for (long blockPos : positions) {
+            BlockState blockState = BlockOverlay.getLoadedBlockState((ServerLevel) level, blockPos);
+            if (blockState == null || readBlocks.put(blockPos, blockState) == blockState)
+                continue;
+            changedPositions.add(blockPos);
+            changedStates.add(blockState);
         }
+        if (changedPositions.isEmpty())
+            return;
+        submit(new ActualBlocks(changedPositions.toLongArray(), changedStates.toArray(new BlockState[0])));
+        flush();
+    }
+
+    /**
+     * Sets all altered blocks for given player.
+     * @param viewer that receives changes.
+     */
+    private void setPlayerBlocks(Viewer viewer) {
+        alteredBlocks.getPackets().forEach(viewer::send);
     }
 
     /**
      * Reset all altered block for given player
-     * @param player that receives changes.
+     * @param viewer that receives changes.
      */
-    private void resetPlayerBlocks(Player player) {
-        for(Location location : alteredBlocksMap.keySet()) {
-            BlockData blockData = location.getBlock().getBlockData();
-            player.sendBlockChange(location, blockData);
-        }
+    private void resetPlayerBlocks(Viewer viewer) {
+        actualBlocks.getPackets().forEach(viewer::send);
     }
 
     /**
      * Change visual block in stage world for every participating player to see.
+     * Only the last change of a block per frame is sent, together with all other changes in its chunk section.
      * @param location of block to change.
      * @param blockData that block is to look like.
      */
     public void sendBlockChange(Vector location, BlockData blockData) {
-        Location loc = location.toLocation(level.getWorld());
-        for(CraftPlayer player : proximitySensor.getPlayerList()) {
-            player.sendBlockChange(loc, blockData);
-        }
-        alteredBlocksMap.put(loc, blockData);
+        long blockPos = BlockPos.asLong(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        submit(new BlockChange(blockPos, ((CraftBlockData) blockData).getState()));
+    }
+
+    /**
+     * Shows the actual block again to every participating player and forgets the visual change.
+     * @param location of block to restore.
+     */
+    public void restoreBlock(Vector location) {
+        submit(new RestoreBlock(BlockPos.asLong(location.getBlockX(), location.getBlockY(), location.getBlockZ())));
     }
 
     /* ----------------------- ENTITIES ----------------------- */
 
-    private final Map<Integer, Entity> entityMap = new HashMap<>();
+    /* Owned by the sender thread */
+    private final Map<Integer, EntityState> entityMap = new HashMap<>();
+    private final Map<Integer, PendingEntity> pendingEntities = new LinkedHashMap<>();
+
+    /**
+     * Latest packets of a spawned entity, used to spawn it for players joining later.
+     * Metadata is kept as values, viewers up to date only receive the values changed this frame, others the full snapshot.
+     * Likewise, viewers up to date receive moves relative to the position last sent, others a teleport.
+     */
+    private static final class EntityState {
+        private final int id;
+        private final Packet<?> add;
+        private final Packet<?>[] packets = new Packet<?>[3];
+        private final Map<Integer, SynchedEntityData.DataValue<?>> metadata = new TreeMap<>();
+        private final Map<Integer, SynchedEntityData.DataValue<?>> dirtyMetadata = new TreeMap<>();
+        private Packet<?> dirtyMetadataPacket;
+        private Packet<?> movePacket;
+        private double x;
+        private double y;
+        private double z;
+        /* Position known to viewers up to date */
+        private double sentX;
+        private double sentY;
+        private double sentZ;
+        private int moves;
+
+        private EntityState(SpawnEntity spawn) {
+            this.id = spawn.id();
+            this.add = spawn.add();
+            this.packets[EQUIPMENT] = spawn.equipment();
+            if (spawn.metadata() != null)
+                spawn.metadata().forEach(value -> metadata.put(value.id(), value));
+            this.x = spawn.x();
+            this.y = spawn.y();
+            this.z = spawn.z();
+            this.sentX = x;
+            this.sentY = y;
+            this.sentZ = z;
+        }
+
+        /**
+         * Builds the packet moving the entity from the position last sent to its current one. Small moves are sent
+         * relative, large ones and every few moves a teleport. Moves too small to be seen are left out, they add up until
+         * they are not.
+         */
+        private void packMove() {
+            long deltaX = Math.round(x * MOVE_SCALE) - Math.round(sentX * MOVE_SCALE);
+            long deltaY = Math.round(y * MOVE_SCALE) - Math.round(sentY * MOVE_SCALE);
+            long deltaZ = Math.round(z * MOVE_SCALE) - Math.round(sentZ * MOVE_SCALE);
+            if (Math.abs(deltaX) < MIN_MOVE && Math.abs(deltaY) < MIN_MOVE && Math.abs(deltaZ) < MIN_MOVE)
+                return;
+            if (++moves % RESYNC_INTERVAL == 0 || !isShort(deltaX) || !isShort(deltaY) || !isShort(deltaZ))
+                movePacket = packets[MOVE];
+            else
+                movePacket = new ClientboundMoveEntityPacket.Pos(id, (short) deltaX, (short) deltaY, (short) deltaZ, false);
+            sentX = x;
+            sentY = y;
+            sentZ = z;
+        }
+
+        private static boolean isShort(long value) {
+            return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+        }
+
+        private void updateMetadata(List<SynchedEntityData.DataValue<?>> values) {
+            for (SynchedEntityData.DataValue<?> value : values) {
+                metadata.put(value.id(), value);
+                dirtyMetadata.put(value.id(), value);
+            }
+            packets[METADATA] = null;
+        }
+
+        /**
+         * Builds the packet of the metadata changed since the last frame.
+         */
+        private void packDirtyMetadata() {
+            if (!dirtyMetadata.isEmpty())
+                dirtyMetadataPacket = new ClientboundSetEntityDataPacket(id, List.copyOf(dirtyMetadata.values()));
+            dirtyMetadata.clear();
+        }
+
+        private Packet<?> getMetadataSnapshot() {
+            if (packets[METADATA] == null && !metadata.isEmpty())
+                packets[METADATA] = new ClientboundSetEntityDataPacket(id, List.copyOf(metadata.values()));
+            return packets[METADATA];
+        }
+
+        private void sendTo(Viewer viewer) {
+            viewer.send(add);
+            sendTo(viewer, -1);
+        }
+
+        /**
+         * @param kinds bit mask of the kinds of updates to send.
+         */
+        private void sendTo(Viewer viewer, int kinds) {
+            for (int kind = 0; kind < packets.length; kind++) {
+                if ((kinds & 1 << kind) == 0)
+                    continue;
+                boolean snapshot = (kinds & 1 << SNAPSHOT) != 0;
+                Packet<?> packet = packets[kind];
+                if (kind == METADATA)
+                    packet = snapshot || dirtyMetadataPacket == null ? getMetadataSnapshot() : dirtyMetadataPacket;
+                else if (kind == MOVE && !snapshot)
+                    packet = movePacket;
+                if (packet != null)
+                    viewer.send(packet);
+            }
+        }
+    }
+
+    /**
+     * Changes of an entity since the last flush, the latest packet of each kind is kept in its {@link EntityState}.
+     */
+    private static final class PendingEntity {
+        private final int id;
+        /* Bit mask of the kinds of updates */
+        private int kinds;
+        private boolean spawned;
+        private boolean destroyed;
+
+        private PendingEntity(int id) {
+            this.id = id;
+        }
+
+        private void spawn() {
+            spawned = true;
+            destroyed = false;
+            kinds = 0;
+        }
+
+        private void update(int kind) {
+            // Spawning sends the latest state anyway
+            if (!spawned)
+                kinds |= 1 << kind;
+        }
+
+        private void destroy() {
+            destroyed = true;
+            kinds = 0;
+        }
+    }
 
     /**
      * Creates a full list of all necessary packets for spawning an entity.
@@ -203,17 +821,33 @@ public class PacketHandler {
      * @param entity to spawn.
      */
     public void spawnEntity(Entity entity) {
-        entityMap.put(entity.getId(), entity);
-        getEntitySpawnPackets(entity).forEach(this::sendPacketToAllPlayers);
+        Packet<?> equipment = entity instanceof LivingEntity livingEntity ? getEntityEquipmentPacket(livingEntity) : null;
+        SynchedEntityData entityData = entity.getEntityData();
+        List<SynchedEntityData.DataValue<?>> metadata = entityData.getNonDefaultValues();
+        entityData.packDirty(); // Already part of the spawn
+        submit(new SpawnEntity(entity.getId(), entity.getX(), entity.getY(), entity.getZ(), new ClientboundAddEntityPacket(entity, 0, entity.blockPosition()), metadata, equipment));
     }
 
     /**
-     * Updates an entity for every participating player.
+     * Updates the metadata of an entity changed since the last update for every participating player.
      * @param entity to update.
      */
     public void updateEntity(Entity entity) {
-        entityMap.put(entity.getId(), entity);
-        sendPacketToAllPlayers(getEntityMetadataPacket(entity));
+        List<SynchedEntityData.DataValue<?>> values = entity.getEntityData().packDirty();
+        if (values != null)
+            submit(new UpdateMetadata(entity.getId(), entity.getX(), entity.getY(), entity.getZ(), values));
+    }
+
+    /**
+     * Sends all metadata of an entity again for every participating player, even if it did not change.
+     * @param entity to refresh.
+     */
+    public void refreshEntity(Entity entity) {
+        SynchedEntityData entityData = entity.getEntityData();
+        List<SynchedEntityData.DataValue<?>> values = entityData.getNonDefaultValues();
+        entityData.packDirty();
+        if (values != null)
+            submit(new UpdateMetadata(entity.getId(), entity.getX(), entity.getY(), entity.getZ(), values));
     }
 
     /**
@@ -221,8 +855,7 @@ public class PacketHandler {
      * @param entity to update.
      */
     public void updateEntityEquipment(LivingEntity entity) {
-        entityMap.put(entity.getId(), entity);
-        sendPacketToAllPlayers(getEntityEquipmentPacket(entity));
+        submit(new UpdateEntity(entity.getId(), entity.getX(), entity.getY(), entity.getZ(), EQUIPMENT, getEntityEquipmentPacket(entity)));
     }
 
     /**
@@ -230,8 +863,7 @@ public class PacketHandler {
      * @param entity to move.
      */
     public void moveEntity(Entity entity) {
-        entityMap.put(entity.getId(), entity);
-        sendPacketToAllPlayers(getEntityMovePacket(entity));
+        submit(new UpdateEntity(entity.getId(), entity.getX(), entity.getY(), entity.getZ(), MOVE, getEntityMovePacket(entity)));
     }
 
     /**
@@ -239,30 +871,28 @@ public class PacketHandler {
      * @param id entity id to destroy.
      */
     public void destroyEntity(int id) {
-        entityMap.remove(id);
-        sendPacketToAllPlayers(getEntityDestroyPacket(id));
+        submit(new DestroyEntity(id));
     }
 
     /**
      * Sets entities for given player.
-     * @param player to set entities for.
+     * @param viewer to set entities for.
      */
-    private void setPlayerEntities(CraftPlayer player) {
-        entityMap.values().forEach(entity ->
-                getEntitySpawnPackets(entity).forEach(packet ->
-                        player.getHandle().connection.send(packet)));
+    private void setPlayerEntities(Viewer viewer) {
+        entityMap.values().forEach(state -> state.sendTo(viewer));
     }
 
     /**
      * Resets entities for given player.
-     * @param player to reset entities for.
+     * @param viewer to reset entities for.
      */
-    private void resetPlayerEntities(CraftPlayer player) {
-        entityMap.keySet().forEach(id -> player.getHandle().connection.send(getEntityDestroyPacket(id)));
+    private void resetPlayerEntities(Viewer viewer) {
+        entityMap.keySet().forEach(id -> viewer.send(getEntityDestroyPacket(id)));
     }
 
     /* ----------------------- SCOREBOARD ----------------------- */
 
+    /* Owned by the sender thread */
     private final List<PlayerTeam> scoreboardTeamList = new ArrayList<>();
 
     /**
@@ -279,17 +909,15 @@ public class PacketHandler {
      * @param scoreboardTeam to create.
      */
     public void createTeam(PlayerTeam scoreboardTeam) {
-        scoreboardTeamList.add(scoreboardTeam);
-        sendPacketToAllPlayers(getTeamCreationPacket(scoreboardTeam));
+        submit(new CreateTeam(scoreboardTeam));
     }
 
     /**
      * Sets teams for given player
-     * @param player to set teams for.
+     * @param viewer to set teams for.
      */
-    private void setPlayerTeams(CraftPlayer player) {
-        scoreboardTeamList.forEach(scoreboardTeam ->
-                player.getHandle().connection.send(getTeamCreationPacket(scoreboardTeam)));
+    private void setPlayerTeams(Viewer viewer) {
+        scoreboardTeamList.forEach(scoreboardTeam -> viewer.send(getTeamCreationPacket(scoreboardTeam)));
     }
 
     /* ----------------------- PARTICLES ----------------------- */
@@ -306,8 +934,33 @@ public class PacketHandler {
      * @param data refer to Spigot docs.
      */
     public void spawnParticle(Particle particle, Vector location, int count, double offsetX, double offsetY, double offsetZ, double time, Object data) {
-        for(Player player : proximitySensor.getPlayerList())
-            player.spawnParticle(particle, location.toLocation(level.getWorld()), count, offsetX, offsetY, offsetZ, time, data);
+        submit(new SpawnParticle(CraftParticle.createParticleParam(particle, data), location.getX(), location.getY(), location.getZ(), count, (float) offsetX, (float) offsetY, (float) offsetZ, (float) time));
+    }
+
+    /**
+     * Spawns a particle for every viewer, scaling its count down with the distance of the viewer. Fractions of a
+     * particle are spawned by chance, so far viewers still see the same effect, only thinner. Viewers receiving the same
+     * count share a single packet, so it is encoded only once.
+     */
+    private void spawnParticle(SpawnParticle particle) {
+        ShowSettings.Stage.LevelOfDetail levelOfDetail = showSettings.stage().levelOfDetail();
+        Map<Integer, Packet<?>> packets = new HashMap<>();
+        for (Viewer viewer : viewerList) {
+            viewer.locate();
+            double distance = Math.sqrt(viewer.distanceSquared(particle.x(), particle.y(), particle.z()));
+            double scale = levelOfDetail.getParticleScale(distance);
+            int count = particle.count();
+            if (scale < 1) {
+                // A count of 0 spawns a single particle with the offset as direction
+                double expected = Math.max(count, 1) * scale;
+                int scaled = (int) expected + (ThreadLocalRandom.current().nextDouble() < expected - (int) expected ? 1 : 0);
+                if (scaled == 0)
+                    continue;
+                if (count > 0)
+                    count = scaled;
+            }
+            viewer.send(packets.computeIfAbsent(count, particleCount -> new ClientboundLevelParticlesPacket(particle.particle(), false, particle.x(), particle.y(), particle.z(), particle.offsetX(), particle.offsetY(), particle.offsetZ(), particle.time(), particleCount)));
+        }
     }
 
     /* ----------------------- FIREWORK ----------------------- */
@@ -317,15 +970,18 @@ public class PacketHandler {
      * @param entityFireworks to spawn.
      */
     public void spawnFirework(FireworkRocketEntity entityFireworks) {
-        getEntitySpawnPackets(entityFireworks).forEach(this::sendPacketToAllPlayers);
+        getEntitySpawnPackets(entityFireworks).forEach(packet -> submit(new Broadcast(packet)));
 
         new BukkitRunnable() {
             @Override
             public void run() {
                 entityFireworks.lifetime = 0;
-                sendPacketToAllPlayers(getEntityMetadataPacket(entityFireworks));
-                sendPacketToAllPlayers(new ClientboundEntityEventPacket(entityFireworks, (byte) 17));
-                sendPacketToAllPlayers(getEntityDestroyPacket(entityFireworks.getId()));
+                ClientboundSetEntityDataPacket metadataPacket = getEntityMetadataPacket(entityFireworks);
+                if (metadataPacket != null)
+                    submit(new Broadcast(metadataPacket));
+                submit(new Broadcast(new ClientboundEntityEventPacket(entityFireworks, (byte) 17)));
+                submit(new Broadcast(getEntityDestroyPacket(entityFireworks.getId())));
+                flush();
             }
         }.runTaskLaterAsynchronously(lightShow, entityFireworks.lifetime);
     }
@@ -341,8 +997,9 @@ public class PacketHandler {
      * @param pitch of the sound.
      */
     public void playSound(Vector location, String sound, SoundCategory soundCategory, float volume, float pitch) {
-        for(Player player : proximitySensor.getPlayerList())
-            player.playSound(location.toLocation(level.getWorld()), sound, soundCategory, volume, pitch);
+        Holder<SoundEvent> soundEvent = Holder.direct(SoundEvent.createVariableRangeEvent(ResourceLocation.parse(sound)));
+        submit(new Broadcast(new ClientboundSoundPacket(soundEvent, SoundSource.valueOf(soundCategory.name()), location.getX(), location.getY(), location.getZ(), volume, pitch, ThreadLocalRandom.current().nextLong())));
+        flush();
     }
 
     /**
@@ -351,7 +1008,7 @@ public class PacketHandler {
      * @param soundCategory category in which the sound was played in.
      */
     public void stopSound(String sound, SoundCategory soundCategory) {
-        for(Player player : proximitySensor.getPlayerList())
-            player.stopSound(sound, soundCategory);
+        submit(new Broadcast(new ClientboundStopSoundPacket(ResourceLocation.parse(sound), soundCategory == null ? null : SoundSource.valueOf(soundCategory.name()))));
+        flush();
     }
 }
@@ -33,8 +33,6 @@ public class ProximitySensor {
      * Loads all necessary information.
      */
     public void load() {
-        this.playerList.clear();
-
         this.radius = showSettings.stage().radius();
         this.anchor = showSettings.stage().location();
     }
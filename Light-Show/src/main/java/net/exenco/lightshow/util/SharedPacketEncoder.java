@@ -0,0 +1,39 @@
+package net.exenco.lightshow.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.ProtocolInfo;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.GameProtocols;
+
+/**
+ * Encodes packets of the game protocol once for all players. The resulting buffer contains packet id and payload exactly
+ * as the encoder of a connection would write them, so it can be written to the channel of every player in its place.
+ * Framing, compression and encryption still happen per connection.
+ */
+final class SharedPacketEncoder {
+    private final ProtocolInfo<ClientGamePacketListener> protocolInfo;
+
+    SharedPacketEncoder(RegistryAccess registryAccess) {
+        this.protocolInfo = GameProtocols.CLIENTBOUND.bind(RegistryFriendlyByteBuf.decorator(registryAccess));
+    }
+
+    /**
+     * @param packet to encode.
+     * @return buffer owned by the caller, or null if the packet cannot be shared and has to be sent the normal way.
+     */
+    @SuppressWarnings("unchecked")
+    ByteBuf encode(Packet<?> packet) {
+        ByteBuf buffer = ByteBufAllocator.DEFAULT.ioBuffer();
+        try {
+            protocolInfo.codec().encode(buffer, (Packet<? super ClientGamePacketListener>) packet);
+            return buffer;
+        } catch (RuntimeException e) {
+            buffer.release();
+            return null;
+        }
+    }
+}
@@ -83,12 +83,16 @@ public class ShowSettings {
         }
     }
 
-    public record ArtNet(Redirector redirector, Address address, int timeout, String starting, String cannotStart, String stopping, String cannotStop, String connected, String notConnected) {
+    public record ArtNet(Redirector redirector, Address address, Receiver receiver, Render render, Merge merge, Sacn sacn, int timeout, String starting, String cannotStart, String stopping, String cannotStop, String connected, String notConnected, String receiverStatistics, String universeStatistics) {
         public static ArtNet valueOf(JsonObject jsonObject) {
             if (jsonObject == null) throw new IllegalArgumentException("JsonObject for ArtNet cannot be null");
 
             Redirector redirector = jsonObject.has("Redirector") ? Redirector.valueOf(jsonObject.getAsJsonObject("Redirector")) : null;
             Address address = jsonObject.has("Address") ? Address.valueOf(jsonObject.getAsJsonObject("Address")) : null;
+            Receiver receiver = Receiver.valueOf(jsonObject.has("Receiver") ? jsonObject.getAsJsonObject("Receiver") : new JsonObject());
+            Render render = Render.valueOf(jsonObject.has("Render") ? jsonObject.getAsJsonObject("Render") : new JsonObject());
+            Merge merge = Merge.valueOf(jsonObject.has("Merge") ? jsonObject.getAsJsonObject("Merge") : new JsonObject());
+            Sacn sacn = Sacn.valueOf(jsonObject.has("Sacn") ? jsonObject.getAsJsonObject("Sacn") : new JsonObject());
             int timeout = jsonObject.has("Timeout") ? jsonObject.get("Timeout").getAsInt() : 0;
             String starting = jsonObject.has("Starting") ? jsonObject.get("Starting").getAsString() : "";
             String cannotStart = jsonObject.has("CannotStart") ? jsonObject.get("CannotStart").getAsString() : "";
@@ -96,8 +100,10 @@ public class ShowSettings {
             String cannotStop = jsonObject.has("CannotStop") ? jsonObject.get("CannotStop").getAsString() : "";
             String connected = jsonObject.has("Connected") ? jsonObject.get("Connected").getAsString() : "";
             String notConnected = jsonObject.has("NotConnected") ? jsonObject.get("NotConnected").getAsString() : "";
+            String receiverStatistics = jsonObject.has("ReceiverStatistics") ? jsonObject.get("ReceiverStatistics").getAsString() : "Art-Net received %received% packets, dropped %dropped% locally and %kernel% in the kernel.";
+            String universeStatistics = jsonObject.has("UniverseStatistics") ? jsonObject.get("UniverseStatistics").getAsString() : "Universe %universe%: %received% received, %stale% stale, %duplicates% duplicates, %lost% lost, %unchanged% unchanged from %sources% sources.";
 
-            return new ArtNet(redirector, address, timeout, starting, cannotStart, stopping, cannotStop, connected, notConnected);
+            return new ArtNet(redirector, address, receiver, render, merge, sacn, timeout, starting, cannotStart, stopping, cannotStop, connected, notConnected, receiverStatistics, universeStatistics);
         }
 
         public record Redirector(boolean enabled, String key) {
@@ -110,6 +116,69 @@ public class ShowSettings {
             }
         }
 
+        /**
+         * @param channel whether to receive through a DatagramChannel (Mode Channel) instead of a DatagramSocket.
+         * @param receiveBuffer SO_RCVBUF in bytes, 0 for the system default.
+         * @param refresh milliseconds after which an unchanged frame is published anyway as keep-alive, 0 or less
+         *                to never publish unchanged frames.
+         */
+        public record Receiver(boolean channel, int receiveBuffer, int refresh) {
+            public static Receiver valueOf(JsonObject jsonObject) {
+                if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Receiver cannot be null");
+
+                boolean channel = !jsonObject.has("Mode") || !jsonObject.get("Mode").getAsString().equalsIgnoreCase("Socket");
+                int receiveBuffer = jsonObject.has("ReceiveBuffer") ? jsonObject.get("ReceiveBuffer").getAsInt() : 0;
+                int refresh = jsonObject.has("Refresh") ? jsonObject.get("Refresh").getAsInt() : 1000;
+                return new Receiver(channel, receiveBuffer, refresh);
+            }
+        }
+
+        public record Render(int rate, int idleTimeout, int threads, int tickBudget) {
+            public static Render valueOf(JsonObject jsonObject) {
+                if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Render cannot be null");
+
+                int rate = jsonObject.has("Rate") ? jsonObject.get("Rate").getAsInt() : 20;
+                int idleTimeout = jsonObject.has("IdleTimeout") ? jsonObject.get("IdleTimeout").getAsInt() : 5000;
+                int threads = jsonObject.has("Threads") ? jsonObject.get("Threads").getAsInt() : Math.min(4, Runtime.getRuntime().availableProcessors());
+                int tickBudget = jsonObject.has("TickBudget") ? jsonObject.get("TickBudget").getAsInt() : 5000;
+                return new Render(rate, idleTimeout, threads, tickBudget);
+            }
+        }
+
+        public record Merge(String mode, int sourceTimeout, List<Source> sources) {
+            public static Merge valueOf(JsonObject jsonObject) {
+                if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Merge cannot be null");
+
+                String mode = jsonObject.has("Mode") ? jsonObject.get("Mode").getAsString() : "HTP";
+                int sourceTimeout = jsonObject.has("SourceTimeout") ? jsonObject.get("SourceTimeout").getAsInt() : 10000;
+                List<Source> sources = new ArrayList<>();
+                if (jsonObject.has("Sources"))
+                    for (JsonElement jsonElement : jsonObject.getAsJsonArray("Sources"))
+                        sources.add(Source.valueOf(jsonElement.getAsJsonObject()));
+                return new Merge(mode, sourceTimeout, sources);
+            }
+
+            public record Source(String ip, int priority) {
+                public static Source valueOf(JsonObject jsonObject) {
+                    if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Source cannot be null");
+
+                    String ip = jsonObject.has("Ip") ? jsonObject.get("Ip").getAsString() : "";
+                    int priority = jsonObject.has("Priority") ? jsonObject.get("Priority").getAsInt() : 100;
+                    return new Source(ip, priority);
+                }
+            }
+        }
+
+        public record Sacn(boolean enabled, String networkInterface) {
+            public static Sacn valueOf(JsonObject jsonObject) {
+                if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Sacn cannot be null");
+
+                boolean enabled = jsonObject.has("Enabled") ? jsonObject.get("Enabled").getAsBoolean() : false;
+                String networkInterface = jsonObject.has("Interface") ? jsonObject.get("Interface").getAsString() : "";
+                return new Sacn(enabled, networkInterface);
+            }
+        }
+
         public record Address(String ip, int port) {
             public static Address valueOf(JsonObject jsonObject) {
                 if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Address cannot be null");
@@ -152,7 +221,32 @@ public class ShowSettings {
         }
     }
 
-    public record Stage(String information, String noCurrentSong, String termsOfService, Location location, double radius) {
+    public record Stage(String information, String noCurrentSong, String termsOfService, Location location, double radius, LevelOfDetail levelOfDetail) {
+        public record LevelOfDetail(double near, double far, int midInterval, int farInterval, double minParticleScale) {
+            public static LevelOfDetail valueOf(JsonObject jsonObject) {
+                if (jsonObject == null) throw new IllegalArgumentException("JsonObject for LevelOfDetail cannot be null");
+
+                double near = jsonObject.has("Near") ? jsonObject.get("Near").getAsDouble() : 48.0;
+                double far = jsonObject.has("Far") ? jsonObject.get("Far").getAsDouble() : 128.0;
+                int midInterval = jsonObject.has("MidInterval") ? jsonObject.get("MidInterval").getAsInt() : 2;
+                int farInterval = jsonObject.has("FarInterval") ? jsonObject.get("FarInterval").getAsInt() : 10;
+                double minParticleScale = jsonObject.has("MinParticleScale") ? jsonObject.get("MinParticleScale").getAsDouble() : 0.2;
+                return new LevelOfDetail(near, far, midInterval, farInterval, minParticleScale);
+            }
+
+            /**
+             * @param distance of the viewer.
+             * @return share of particles to spawn, falling linearly from 1 at near to the minimum at far.
+             */
+            public double getParticleScale(double distance) {
+                if (distance <= near)
+                    return 1;
+                if (distance >= far)
+                    return minParticleScale;
+                return 1 - (1 - minParticleScale) * (distance - near) / (far - near);
+            }
+        }
+
         public static Stage valueOf(JsonObject jsonObject) {
             if (jsonObject == null) throw new IllegalArgumentException("JsonObject for Stage cannot be null");
 
@@ -164,7 +258,8 @@ public class ShowSettings {
                 throw new NullPointerException("World entered for stage location is not valid! " + location);
             }
             double radius = jsonObject.has("Radius") ? jsonObject.get("Radius").getAsDouble() : 0.0;
-            return new Stage(information, noCurrentSong, termsOfService, location, radius);
+            LevelOfDetail levelOfDetail = LevelOfDetail.valueOf(jsonObject.has("LevelOfDetail") ? jsonObject.getAsJsonObject("LevelOfDetail") : new JsonObject());
+            return new Stage(information, noCurrentSong, termsOfService, location, radius, levelOfDetail);
         }
     }
 
@@ -75,7 +75,8 @@ public class GuardianBeamApi {
     public void callColorChange() {
         if(this.entityGuardian == null)
             return;
-        packetHandler.updateEntity(entityGuardian);
+        // Nothing changed, but resending the target restarts the beam in its first colour
+        packetHandler.refreshEntity(entityGuardian);
     }
 
     private void setGuardianTarget(Guardian entityGuardian, int entityId) {